@@ -0,0 +1,199 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe cache of anagram query results, keyed by the letters in a Rack and an optional
+ * required letter. Move generation asks the same question many times in one search, once for every anchor
+ * holding the same letter and again in every sibling node with the same rack, so answering repeats from
+ * here saves rescanning the index. When the cache is full, the least recently used result is dropped.
+ *
+ * The Sets handed out are shared between every caller asking the same question, so only unmodifiable Sets should
+ * be cached.
+ *
+ * @author Aryan Agrawal
+ */
+public class AnagramCache {
+
+    /** The most tiles of any one letter a Rack can have and still be cached, since each count is packed
+     * into four bits of the key.*/
+    private static final int MAX_COUNT = 15;
+
+    /** The cached results, in order from least to most recently used.*/
+    private final LinkedHashMap<Key, Set<String>> _entries;
+    /** The most results this cache holds at once.*/
+    private final int _capacity;
+    /** The number of queries answered from the cache, and the number that weren't.*/
+    private final AtomicLong _hits, _misses;
+
+    /**
+     * Constructor that creates an empty cache holding at most the given number of results.
+     * @param capacity The most results to hold at once. Must be positive.
+     */
+    public AnagramCache(int capacity) {
+        if (capacity <= 0) {
+            throw new BananaException("An anagram cache must have room for at least one result.");
+        }
+        _capacity = capacity;
+        _entries = new LinkedHashMap<Key, Set<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Set<String>> eldest) {
+                return size() > _capacity;
+            }
+        };
+        _hits = new AtomicLong();
+        _misses = new AtomicLong();
+    }
+
+    /**
+     * Returns the cached words that can be formed from the given letters and that contain the given required
+     * letter, or null if they haven't been cached. A required letter of 0 means no letter is required.
+     */
+    public Set<String> get(Rack letters, char required) {
+        Key key = Key.of(letters, required);
+        Set<String> result = null;
+        if (key != null) {
+            synchronized (_entries) {
+                result = _entries.get(key);
+            }
+        }
+        if (result == null) {
+            _misses.incrementAndGet();
+        } else {
+            _hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Caches the words that can be formed from the given letters and that contain the given required letter,
+     * dropping the least recently used result if the cache is full. Racks with more than fifteen of any one
+     * letter are never cached.
+     */
+    public void put(Rack letters, char required, Set<String> words) {
+        Key key = Key.of(letters, required);
+        if (key == null) {
+            return;
+        }
+        synchronized (_entries) {
+            _entries.put(key, words);
+        }
+    }
+
+    /**
+     * Empties the cache and resets its counters.
+     */
+    public void clear() {
+        synchronized (_entries) {
+            _entries.clear();
+        }
+        _hits.set(0);
+        _misses.set(0);
+    }
+
+    /**
+     * Returns the number of results currently cached.
+     */
+    public int size() {
+        synchronized (_entries) {
+            return _entries.size();
+        }
+    }
+
+    /**
+     * Returns the most results this cache holds at once.
+     */
+    public int capacity() {
+        return _capacity;
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     */
+    public long hits() {
+        return _hits.get();
+    }
+
+    /**
+     * Returns the number of queries that had to be answered without the cache.
+     */
+    public long misses() {
+        return _misses.get();
+    }
+
+    /**
+     * Returns the fraction of queries answered from the cache, or 0 if there haven't been any.
+     */
+    public double hitRate() {
+        long hits = _hits.get();
+        long total = hits + _misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns a String summarizing how well this cache has done, for printing after a search.
+     */
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%%), %d of %d cached", hits(), misses(),
+                100 * hitRate(), size(), _capacity);
+    }
+
+    /**
+     * The key for one cached query. The letter counts are packed four bits each into two longs, A through M in
+     * the first and N through Z in the second, with the required letter in the spare high bits of the second.
+     */
+    private static final class Key {
+
+        /** The packed counts of A through M.*/
+        private final long _low;
+        /** The packed counts of N through Z, and the required letter.*/
+        private final long _high;
+
+        /**
+         * Constructor that creates a Key from already packed halves.
+         */
+        private Key(long low, long high) {
+            _low = low;
+            _high = high;
+        }
+
+        /**
+         * Returns the Key for the given letters and required letter, or null if the letters can't be packed
+         * because there are more than fifteen of one of them.
+         */
+        static Key of(Rack letters, char required) {
+            long low = 0;
+            long high = 0;
+            for (int i = 0; i < 13; i++) {
+                int lowCount = letters.count((char) ('A' + i));
+                int highCount = letters.count((char) ('N' + i));
+                if (lowCount > MAX_COUNT || highCount > MAX_COUNT) {
+                    return null;
+                }
+                low |= (long) lowCount << (4 * i);
+                high |= (long) highCount << (4 * i);
+            }
+            if (required != 0) {
+                high |= (long) (Character.toUpperCase(required) - 'A' + 1) << 52;
+            }
+            return new Key(low, high);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _low == other._low && _high == other._high;
+        }
+
+        @Override
+        public int hashCode() {
+            long mixed = _low * 0x9E3779B97F4A7C15L ^ _high;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+}
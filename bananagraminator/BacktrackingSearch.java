@@ -0,0 +1,173 @@
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A complete depth-first solver, which Player falls back on when its search can't find a Move. Rather than
+ * building on the words already placed, it starts again from an empty board and tries every first word the
+ * letters make, and below each one every sequence of legal Moves, backing out of any placement that leads
+ * nowhere, until the hand is empty. So a rack that a few bad early words left unsolvable can still be solved.
+ *
+ * Moves that play the most tiles are tried first, and a state is given up on as soon as the RackOracle shows
+ * its hand can never be emptied. Every state searched to the end without a solution is remembered by its
+ * Zobrist hash, so the search never searches it again when a different order of the same Moves leads back to
+ * it. Since a complete search can take very long, it stops after a set number of states, and then fails.
+ *
+ * @author Aryan Agrawal
+ */
+public class BacktrackingSearch {
+
+    /** The number of states searched before giving up, unless the constructor is given another.*/
+    public static final long DEFAULT_NODE_BUDGET = 50000;
+    /** The number of failed states remembered at once. Once full, every one is forgotten and the memo starts
+     * again.*/
+    private static final int MEMO_CAPACITY = 1 << 20;
+    /** Orders Moves by the number of tiles they play, most first.*/
+    private static final Comparator<Move> MOST_TILES_FIRST =
+            Comparator.comparingInt((Move m) -> m.getNewWord().length()).reversed();
+
+    /** The most states searched before giving up.*/
+    private final long _nodeBudget;
+    /** The hashes of the board and letters of every state known to have no solution.*/
+    private final HashSet<Long> _failed;
+    /** The number of states searched by the current or last solve.*/
+    private long _nodes;
+    /** Set once the search ran out of states or was stopped, after which it only backs out.*/
+    private boolean _exhausted;
+    /** Tells the search to stop early.*/
+    private BooleanSupplier _stopped;
+    /** The metrics that searched states are recorded into.*/
+    private SearchMetrics _metrics;
+
+    /**
+     * Constructor that sets up a search that gives up after the given number of states.
+     * @param nodeBudget The most states to search. Must be positive.
+     */
+    public BacktrackingSearch(long nodeBudget) {
+        if (nodeBudget <= 0) {
+            throw new BananaException("A backtracking search must be allowed at least one state.");
+        }
+        _nodeBudget = nodeBudget;
+        _failed = new HashSet<>();
+    }
+
+    /**
+     * Returns a board of the given size holding every one of the given letters in a valid crossword, or null if
+     * there is none or the search gave up first. The letters are left unchanged.
+     * @param letters The letters to play.
+     * @param boardDim The side length of the board.
+     * @param metrics The metrics that searched states are recorded into.
+     * @param stopped Returns true once the search must stop, because the solve was cancelled or ran out of time.
+     */
+    public BananaBoard solve(Rack letters, int boardDim, SearchMetrics metrics, BooleanSupplier stopped)
+            throws FileNotFoundException {
+        _stopped = stopped;
+        _metrics = metrics;
+        _nodes = 0;
+        _exhausted = false;
+        _failed.clear();
+        ArrayList<String> firsts = new ArrayList<>(Utils.allPossibleWords(letters));
+        metrics.anagramQuery(firsts.size());
+        firsts.sort(Comparator.comparingInt(Utils::wordScore).reversed().thenComparing(Comparator.naturalOrder()));
+        for (String first : firsts) {
+            BananaBoard board = newBoard(boardDim);
+            if (!board.wordFits(first)) {
+                continue;
+            }
+            board.addWord(first);
+            Rack left = new Rack(letters);
+            left.useWord(first);
+            ArrayList<Move> line = new ArrayList<>();
+            if (search(board, left, line)) {
+                BananaBoard solved = newBoard(boardDim);
+                solved.addWord(first);
+                for (Move m : line) {
+                    solved.addWord(m);
+                }
+                return solved;
+            }
+            if (_exhausted) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method for solve that searches below the given state, and returns whether some sequence of Moves
+     * from it empties the hand. If so, those Moves are added to line. Otherwise the board and letters are put
+     * back as they were, and line is unchanged.
+     */
+    private boolean search(BananaBoard board, Rack letters, List<Move> line) throws FileNotFoundException {
+        if (letters.isEmpty()) {
+            return true;
+        }
+        if (_nodes >= _nodeBudget || _stopped.getAsBoolean()) {
+            _exhausted = true;
+            return false;
+        }
+        long key = board.zobristHash() ^ letters.zobristHash();
+        if (_failed.contains(key)) {
+            return false;
+        }
+        _nodes++;
+        _metrics.nodeExpanded();
+        if (Utils.getRackOracle().canPlayAll(letters, board.letterMask())) {
+            ArrayList<Move> moves = board.legalMovesDawg(letters);
+            moves.sort(MOST_TILES_FIRST);
+            for (Move m : moves) {
+                if (!board.applyMove(m)) {
+                    continue;
+                }
+                letters.add(m.getSharedLetter());
+                letters.useWord(m.getNewWord());
+                line.add(m);
+                boolean solved = search(board, letters, line);
+                if (solved) {
+                    return true;
+                }
+                line.remove(line.size() - 1);
+                letters.returnWord(m.getNewWord());
+                letters.remove(m.getSharedLetter());
+                board.undoMove();
+                if (_exhausted) {
+                    return false;
+                }
+            }
+        }
+        if (_failed.size() >= MEMO_CAPACITY) {
+            _failed.clear();
+        }
+        _failed.add(key);
+        return false;
+    }
+
+    /**
+     * Helper method for solve that returns an empty board of the given size, recording into the search's metrics,
+     * whose move generation stops as soon as the search is told to.
+     */
+    private BananaBoard newBoard(int boardDim) {
+        BananaBoard board = new BananaBoard(boardDim);
+        board.setMetrics(_metrics);
+        board.setStopCheck(_stopped);
+        return board;
+    }
+
+    /**
+     * Returns the number of states searched by the last solve.
+     */
+    public long nodes() {
+        return _nodes;
+    }
+
+    /**
+     * Returns whether the last solve gave up because it ran out of states or was stopped, rather than because
+     * there is no solution.
+     */
+    public boolean exhausted() {
+        return _exhausted;
+    }
+}
@@ -1,7 +1,17 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
 
 /**
  * This class represents a Board for the game, and allows the user to add words to a board in a variety of ways,
@@ -12,6 +22,10 @@ import java.util.HashSet;
  */
 public class BananaBoard {
 
+    /** The side length that gives a board with no preset size, which grows to hold whatever words are placed
+     * on it, and whose cost depends on the area around its letters rather than on a fixed size. */
+    public static final int UNBOUNDED = 0;
+
     /**A Grid object that represents the contents of the board. */
     private Grid _board;
     /**A map of all words on the board to CoordinatePairs that represent
@@ -21,6 +35,50 @@ public class BananaBoard {
      * the number of words on the board with the same String contents. Used to
      * differentiate between multiple of the same words on the board. */
     private HashMap<String, Integer> _wordCounts;
+    /**The coordinates of the spaces filled by each Move made with applyMove, as
+     * consecutive x/y pairs, so that undoMove can empty them again. */
+    private int[] _undoSpaces;
+    /**The number of ints in use in _undoSpaces. */
+    private int _undoSpacesSize;
+    /**For each Move made with applyMove that hasn't been undone, in order, the
+     * size of _undoSpaces before it was made. */
+    private int[] _undoFrames;
+    /**For each Move made with applyMove that hasn't been undone, in order, the
+     * Word that it added to the board. */
+    private Word[] _undoWords;
+    /**The number of Moves made with applyMove that haven't been undone. */
+    private int _numApplied;
+    /**The Zobrist hash of the letters and word placements on the board, kept up
+     * to date as words are added and undone. */
+    private long _hash;
+    /**The total of the word scores of every word on the board, counting words that appear more than
+     * once once per appearance, kept up to date as words are added and undone. */
+    private int _score;
+    /**The number of spaces holding each letter, indexed from A. */
+    private int[] _letterCounts;
+    /** The metrics this board records its work into, shared with every copy made of it.*/
+    private SearchMetrics _metrics;
+    /** Returns true once move generation on this board or any copy of it should stop early, or null to never
+     * stop.*/
+    private BooleanSupplier _stopped;
+    /**The Moves legalMovesDawg last generated from each anchor, keyed by the anchor's space and the
+     * direction of the new words. An entry is dropped once a word is placed close enough to the anchor
+     * to change its Moves, and is reused for any Rack that holds no more of each letter. */
+    private HashMap<Long, AnchorMoves> _moveCache;
+    /**The spaces filled since _moveCache was last brought up to date, with the runs of letters through
+     * them, as six ints each: x, y, and the left, right, bottom and top ends of the runs. The entries
+     * they could change are only dropped by the next call to legalMovesDawg, so that the boards at the
+     * leaves of a search, which never generate Moves, don't pay for it. */
+    private int[] _dirtySpaces;
+    /**The number of ints in use in _dirtySpaces, and the number whose entries have been dropped. */
+    private int _dirtySize, _dirtyChecked;
+    /**Each change made to _moveCache while a Move made with applyMove is in place, as the key changed
+     * and the entry it held before, so that undoMove can put the cache back as it was. */
+    private ArrayList<Long> _cacheJournalKeys;
+    private ArrayList<AnchorMoves> _cacheJournalEntries;
+    /**For each Move made with applyMove that hasn't been undone, in order, the size of the cache
+     * journal, _dirtySize and _dirtyChecked before it was made. */
+    private int[] _cacheFrames;
 
     /**
      * Copy constructor used throughout the program, used to simplify game trees, recursion, and
@@ -29,7 +87,7 @@ public class BananaBoard {
      * @param b The BananaBoard instance to copy.
      */
     public BananaBoard(BananaBoard b) {
-        _board = new Grid(b._board);
+        _board = b._board.copy();
         _wordPositions = new HashMap<>();
         _wordCounts = new HashMap<>();
         for (Word w : b._wordPositions.keySet()) {
@@ -42,101 +100,98 @@ public class BananaBoard {
             int count = b._wordCounts.get(s);
             _wordCounts.put(s, count);
         }
+        _hash = b._hash;
+        _score = b._score;
+        _letterCounts = b._letterCounts.clone();
+        _metrics = b._metrics;
+        _metrics.boardCopied();
+        _stopped = b._stopped;
+        _moveCache = new HashMap<>(b._moveCache);
+        initializeUndoLog();
+        _dirtySpaces = Arrays.copyOfRange(b._dirtySpaces, b._dirtyChecked, b._dirtySpaces.length);
+        _dirtySize = b._dirtySize - b._dirtyChecked;
     }
 
     /**
      * Default Constructor, sets all variables to default, including Grid size.
      */
     public BananaBoard() {
-        _board = new Grid();
+        _board = new DenseGrid();
         _wordPositions = new HashMap<>();
         _wordCounts = new HashMap<>();
+        _metrics = SearchMetrics.global();
+        _moveCache = new HashMap<>();
+        _letterCounts = new int[26];
+        initializeUndoLog();
     }
 
     /**
      * Alternate Constructor, sets all variables to default except for grid size,
      * which is passed in.
-     * @param dim Side length of the grid.
+     * @param dim Side length of the grid, or UNBOUNDED for a board with no preset size.
      */
     public BananaBoard(int dim) {
-        _board = new Grid(dim);
+        _board = dim == UNBOUNDED ? new SparseGrid() : new DenseGrid(dim);
         _wordPositions = new HashMap<>();
         _wordCounts = new HashMap<>();
+        _metrics = SearchMetrics.global();
+        _moveCache = new HashMap<>();
+        _letterCounts = new int[26];
+        initializeUndoLog();
+    }
+
+    /**
+     * Helper method for the constructors that sets up an empty undo log. A copy of a board never
+     * shares or inherits the undo log of the board it was copied from, though it starts with a copy
+     * of its cached Moves.
+     */
+    private void initializeUndoLog() {
+        _undoSpaces = new int[64];
+        _undoSpacesSize = 0;
+        _undoFrames = new int[8];
+        _undoWords = new Word[8];
+        _numApplied = 0;
+        _cacheJournalKeys = new ArrayList<>();
+        _cacheJournalEntries = new ArrayList<>();
+        _cacheFrames = new int[3 * 8];
+        _dirtySpaces = new int[48];
+        _dirtySize = 0;
+        _dirtyChecked = 0;
     }
 
     /**
      * Returns whether a board is currently set up in a valid configuration. This involves
-     * ensuring that all formed words on the board are legal.
+     * ensuring that all formed words on the board are legal. Only visits the spaces that hold
+     * letters, found from the occupancy bits of each row.
      */
     public boolean isValid() throws FileNotFoundException {
-        for (int y = _board.max(); y >= _board.min(); y--) {
-            for (int x = _board.min(); x <= _board.max(); x++) {
-                if (!_board.isEmpty(x, y)) {
-                    char space = _board.getSpace(x, y);
-                    if (y == _board.min() && x == _board.max()) {
-                        continue;
-                    } else if (y == _board.min()) {
-                        if (x == _board.min()) {
-                            if (!_board.isEmpty(x + 1, y)) {
-                                String w = getFullWord(x, y, 0);
-                                if (!Utils.isWord(w)) {
-                                    return false;
-                                }
-                            }
-                        } else {
-                            if (_board.isEmpty(x - 1, y) && !_board.isEmpty(x + 1, y)) {
-                                String w = getFullWord(x, y, 0);
-                                if (!Utils.isWord(w)) {
-                                    return false;
-                                }
-                            }
-                        }
-                    } else if (x == _board.max()) {
-                        if (y == _board.max()) {
-                            if (!_board.isEmpty(x, y - 1)) {
-                                String w = getFullWord(x, y, 1);
-                                if (!Utils.isWord(w)) {
-                                    return false;
-                                }
-                            }
-                        } else {
-                            if (_board.isEmpty(x, y + 1) && !_board.isEmpty(x, y - 1)) {
-                                String w = getFullWord(x, y, 1);
-                                if (!Utils.isWord(w)) {
-                                    return false;
-                                }
-                            }
-                        }
-                    } else {
-                        if (y == _board.max()) {
-                            if (!_board.isEmpty(x, y - 1)) {
-                                String w = getFullWord(x, y, 1);
-                                if (!Utils.isWord(w)) {
-                                    return false;
-                                }
-                            }
-                        } else {
-                            if (_board.isEmpty(x, y + 1) && !_board.isEmpty(x, y - 1)) {
-                                String w = getFullWord(x, y, 1);
-                                if (!Utils.isWord(w)) {
-                                    return false;
-                                }
-                            }
+        long start = System.nanoTime();
+        try {
+            return allWordsValid();
+        } finally {
+            _metrics.validationTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Helper method for isValid that checks every word on the board.
+     */
+    private boolean allWordsValid() throws FileNotFoundException {
+        int lineLongs = _board.lineLongs();
+        for (int y = _board.top(); y >= _board.bottom(); y--) {
+            for (int chunk = 0; chunk < lineLongs; chunk++) {
+                long letters = _board.rowBits(y, chunk);
+                while (letters != 0) {
+                    int x = _board.left() + 64 * chunk + Long.numberOfTrailingZeros(letters);
+                    letters &= letters - 1;
+                    if (!_board.hasLetter(x - 1, y) && _board.hasLetter(x + 1, y)) {
+                        if (!Utils.isWord(getFullWord(x, y, 0))) {
+                            return false;
                         }
-                        if (x == _board.min()) {
-                            if (!_board.isEmpty(x + 1, y)) {
-                                String w = getFullWord(x, y, 0);
-                                if (!Utils.isWord(w)) {
-                                    return false;
-                                }
-                            }
-                        } else {
-                            if (_board.isEmpty(x - 1, y) && !_board.isEmpty(x + 1, y)) {
-                                String w = getFullWord(x, y, 0);
-                                if (!Utils.isWord(w)) {
-                                    return false;
-                                }
-                            }
+                    }
+                    if (!_board.hasLetter(x, y + 1) && _board.hasLetter(x, y - 1)) {
+                        if (!Utils.isWord(getFullWord(x, y, 1))) {
+                            return false;
                         }
                     }
                 }
@@ -153,25 +208,17 @@ public class BananaBoard {
      * @param dir The direction that the word is formed. 1 for vertical, 0 for horizontal.
      */
     private String getFullWord(int x, int y, int dir) {
-        String result = "";
+        StringBuilder result = new StringBuilder();
         if (dir == 0) {
-            for (int xPos = x; xPos <= _board.max(); xPos++) {
-                if (!_board.isEmpty(xPos, y)) {
-                    result += _board.getSpace(xPos, y);
-                } else {
-                    break;
-                }
+            for (int xPos = x; _board.hasLetter(xPos, y); xPos++) {
+                result.append(_board.getSpace(xPos, y));
             }
         } else {
-            for (int yPos = y; yPos >= _board.min(); yPos--) {
-                if (!_board.isEmpty(x, yPos)) {
-                    result += _board.getSpace(x, yPos);
-                } else {
-                    break;
-                }
+            for (int yPos = y; _board.hasLetter(x, yPos); yPos--) {
+                result.append(_board.getSpace(x, yPos));
             }
         }
-        return result;
+        return result.toString();
     }
 
     /**
@@ -190,24 +237,12 @@ public class BananaBoard {
         if (!fits) {
             return false;
         }
-        BananaBoard copy = new BananaBoard(this);
-        int x = (word.length() / 2) * -1;
-        for (int i = 0; i < word.length(); i++, x++) {
-            copy._board.setSpace(word.charAt(i), x, 0);
-        }
-        boolean isValid = copy.isValid();
-        if (isValid) {
-            x = (word.length() / 2) * - 1;
-            int originX = x;
-            for (int i = 0; i < word.length(); i++, x++) {
-                _board.setSpace(word.charAt(i), x, 0);
-            }
-            _wordCounts.put(word, wordFrequency(word) + 1);
-            _wordPositions.put(new Word(word, wordFrequency(word)), new CoordinatePair(originX, 0, 0));
-            return true;
-        } else {
+        int originX = (word.length() / 2) * -1;
+        if (!placementValid(word, originX, 0, 0)) {
             return false;
         }
+        placeWord(word, originX, 0, 0, false);
+        return true;
     }
 
     /**
@@ -230,6 +265,89 @@ public class BananaBoard {
      * @param newWordIndex Integer value of the index on the new word where the two words should overlap.
      */
     public boolean addWord(String word, String addTo, int wordNumber, int startCharIndex, int newWordIndex) throws FileNotFoundException {
+        if (!canAddWord(word, addTo, wordNumber, startCharIndex, newWordIndex)) {
+            return false;
+        }
+        CoordinatePair start = newWordStart(_wordPositions.get(new Word(addTo, wordNumber)), startCharIndex, newWordIndex);
+        placeWord(word, start.x, start.y, start.dir, false);
+        return true;
+    }
+
+    /**
+     * Makes the given Move in place, like addWord, but also records what it changed so that undoMove can
+     * take it back. Used by the game tree in the Player class to search on a single board rather than a copy
+     * per Move. Returns whether the Move was made; an illegal Move leaves the board and the undo log untouched.
+     * @param m The Move to make.
+     */
+    public boolean applyMove(Move m) throws FileNotFoundException {
+        String word = m.getNewWord();
+        String addTo = m.getAddTo().getWord();
+        int wordNumber = m.getAddTo().getNum();
+        if (!canAddWord(word, addTo, wordNumber, m.getAddToIndex(), m.getNewIndex())) {
+            return false;
+        }
+        CoordinatePair start = newWordStart(_wordPositions.get(m.getAddTo()), m.getAddToIndex(), m.getNewIndex());
+        if (_numApplied == _undoFrames.length) {
+            _undoFrames = Arrays.copyOf(_undoFrames, _numApplied * 2);
+            _undoWords = Arrays.copyOf(_undoWords, _numApplied * 2);
+            _cacheFrames = Arrays.copyOf(_cacheFrames, 3 * _numApplied * 2);
+        }
+        _undoFrames[_numApplied] = _undoSpacesSize;
+        _cacheFrames[3 * _numApplied] = _cacheJournalKeys.size();
+        _cacheFrames[3 * _numApplied + 1] = _dirtySize;
+        _cacheFrames[3 * _numApplied + 2] = _dirtyChecked;
+        _undoWords[_numApplied] = placeWord(word, start.x, start.y, start.dir, true);
+        _numApplied++;
+        return true;
+    }
+
+    /**
+     * Takes back the most recent Move made with applyMove that hasn't already been undone, emptying the spaces
+     * it filled, removing its word from _wordPositions and _wordCounts, and putting the cached Moves back as
+     * they were before it was made.
+     */
+    public void undoMove() {
+        if (_numApplied == 0) {
+            throw new BananaException("There is no applied move to undo.");
+        }
+        _numApplied--;
+        int frame = _undoFrames[_numApplied];
+        while (_undoSpacesSize > frame) {
+            int y = _undoSpaces[--_undoSpacesSize];
+            int x = _undoSpaces[--_undoSpacesSize];
+            _hash ^= Zobrist.cell(x, y, _board.getSpace(x, y));
+            countLetter(_board.getSpace(x, y), -1);
+            _board.setSpace('\u0000', x, y);
+        }
+        for (int i = _cacheJournalKeys.size() - 1; i >= _cacheFrames[3 * _numApplied]; i--) {
+            Long key = _cacheJournalKeys.remove(i);
+            AnchorMoves previous = _cacheJournalEntries.remove(i);
+            if (previous == null) {
+                _moveCache.remove(key);
+            } else {
+                _moveCache.put(key, previous);
+            }
+        }
+        _dirtySize = _cacheFrames[3 * _numApplied + 1];
+        _dirtyChecked = _cacheFrames[3 * _numApplied + 2];
+        Word added = _undoWords[_numApplied];
+        _undoWords[_numApplied] = null;
+        CoordinatePair start = _wordPositions.remove(added);
+        _hash ^= Zobrist.word(added.getWord(), start.x, start.y, start.dir);
+        _score -= Utils.wordScore(added.getWord());
+        int count = wordFrequency(added.getWord()) - 1;
+        if (count == 0) {
+            _wordCounts.remove(added.getWord());
+        } else {
+            _wordCounts.put(added.getWord(), count);
+        }
+    }
+
+    /**
+     * Dry run of addWord that accepts the same parameters and returns whether the addition would be successful,
+     * without changing or copying the board. Throws the same errors as addWord for Moves that don't make sense.
+     */
+    public boolean canAddWord(String word, String addTo, int wordNumber, int startCharIndex, int newWordIndex) throws FileNotFoundException {
         CoordinatePair otherStart = _wordPositions.get(new Word(addTo, wordNumber));
         if (otherStart == null) {
             throw new BananaException("The word to which this word is to be appended does not exist");
@@ -237,52 +355,98 @@ public class BananaBoard {
         if (addTo.charAt(startCharIndex) != word.charAt(newWordIndex)) {
             throw new BananaException("The letters do not match as they are meant to be aligned.");
         }
-        boolean fits = wordFits(word, addTo, wordNumber, startCharIndex, newWordIndex);
-        if (!fits) {
-            return false;
-        }
-        BananaBoard copy = new BananaBoard(this);
-        int dir = otherStart.dir;
-        if (dir == 1) {
-            int startY = otherStart.y - startCharIndex;
-            int startX = otherStart.x - newWordIndex;
-            int x = startX;
-            for (int i = 0; i < word.length(); i++, x++) {
-                copy._board.setSpace(word.charAt(i), x, startY);
+        long startTime = System.nanoTime();
+        try {
+            boolean fits = wordFits(word, addTo, wordNumber, startCharIndex, newWordIndex);
+            if (!fits) {
+                return false;
             }
+            CoordinatePair start = newWordStart(otherStart, startCharIndex, newWordIndex);
+            return placementValid(word, start.x, start.y, start.dir);
+        } finally {
+            _metrics.validationTime(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Returns the starting position and direction of a new word that crosses the word starting at otherStart,
+     * with the two words overlapping at the given indexes. The new word always runs perpendicular to the old one.
+     */
+    private CoordinatePair newWordStart(CoordinatePair otherStart, int startCharIndex, int newWordIndex) {
+        if (otherStart.dir == 1) {
+            return new CoordinatePair(otherStart.x - newWordIndex, otherStart.y - startCharIndex, 0);
         } else {
-            int startX = otherStart.x + startCharIndex;
-            int startY = otherStart.y + newWordIndex;
-            int y = startY;
-            for (int i = 0; i < word.length(); i++, y--) {
-                copy._board.setSpace(word.charAt(i), startX, y);
-            }
-        }
-        boolean isValid = copy.isValid();
-        if (isValid) {
-            if (dir == 1) {
-                int startY = otherStart.y - startCharIndex;
-                int startX = otherStart.x - newWordIndex;
-                int x = startX;
-                for (int i = 0; i < word.length(); i++, x++) {
-                    _board.setSpace(word.charAt(i), x, startY);
-                }
-                _wordCounts.put(word, wordFrequency(word) + 1);
-                _wordPositions.put(new Word(word, wordFrequency(word)), new CoordinatePair(startX, startY, 0));
+            return new CoordinatePair(otherStart.x + startCharIndex, otherStart.y + newWordIndex, 1);
+        }
+    }
+
+    /**
+     * Writes the given word onto the board starting at the given coordinate, and records it in _wordCounts and
+     * _wordPositions. Does not check whether the word fits; callers must do so first. Returns the Word
+     * key the word was recorded under.
+     * @param dir The direction of the word. 1 for vertical, 0 for horizontal.
+     * @param undoable Whether to leave the spaces the word fills at the end of _undoSpaces, for applyMove.
+     *                 They are written there either way, so that no array is made for them.
+     */
+    private Word placeWord(String word, int startX, int startY, int dir, boolean undoable) {
+        int from = _undoSpacesSize;
+        if (from + 2 * word.length() > _undoSpaces.length) {
+            _undoSpaces = Arrays.copyOf(_undoSpaces, Math.max(2 * _undoSpaces.length, from + 2 * word.length()));
+        }
+        int x = startX;
+        int y = startY;
+        for (int i = 0; i < word.length(); i++) {
+            if (_board.isEmpty(x, y)) {
+                _hash ^= Zobrist.cell(x, y, word.charAt(i));
+                countLetter(word.charAt(i), 1);
+                _undoSpaces[_undoSpacesSize++] = x;
+                _undoSpaces[_undoSpacesSize++] = y;
+            }
+            _board.setSpace(word.charAt(i), x, y);
+            if (dir == 0) {
+                x++;
             } else {
-                int startX = otherStart.x + startCharIndex;
-                int startY = otherStart.y + newWordIndex;
-                int y = startY;
-                for (int i = 0; i < word.length(); i++, y--) {
-                    _board.setSpace(word.charAt(i), startX, y);
-                }
-                _wordCounts.put(word, wordFrequency(word) + 1);
-                _wordPositions.put(new Word(word, wordFrequency(word)), new CoordinatePair(startX, startY, 1));
+                y--;
             }
-            return true;
-        } else {
+        }
+        markDirty(_undoSpaces, from, _undoSpacesSize);
+        if (!undoable) {
+            _undoSpacesSize = from;
+        }
+        _wordCounts.put(word, wordFrequency(word) + 1);
+        Word added = new Word(word, wordFrequency(word));
+        _wordPositions.put(added, new CoordinatePair(startX, startY, dir));
+        _hash ^= Zobrist.word(word, startX, startY, dir);
+        _score += Utils.wordScore(word);
+        return added;
+    }
+
+    /**
+     * Returns whether writing the given word onto the board starting at the given coordinate would leave the
+     * board valid, assuming the board is valid now. Only looks at the spaces the word covers, the cross words
+     * formed through the spaces it newly fills, and the full line of letters the word joins, including letters
+     * already on the board just before or after it. Does not change or copy the board.
+     * @param dir The direction of the word. 1 for vertical, 0 for horizontal.
+     */
+    private boolean placementValid(String word, int startX, int startY, int dir) throws FileNotFoundException {
+        int dx = dir == 0 ? 1 : 0;
+        int dy = dir == 0 ? 0 : -1;
+        if (!spanInBounds(startX, startY, dir, word.length())) {
             return false;
         }
+        int x = startX;
+        int y = startY;
+        for (int i = 0; i < word.length(); i++, x += dx, y += dy) {
+            char c = word.charAt(i);
+            if (_board.isEmpty(x, y)) {
+                if (!crossWordValid(c, x, y, 1 - dir)) {
+                    return false;
+                }
+            } else if (_board.getSpace(x, y) != c) {
+                return false;
+            }
+        }
+        return lineValid(word, startX, startY, dir);
     }
 
     /**
@@ -298,45 +462,39 @@ public class BananaBoard {
         if (startCharIndex >= addTo.length()) {
             throw new BananaException("The character index to start with on the connecting word is out of range.");
         }
-        CoordinatePair start = _wordPositions.get(connectWord);
-        int direction = start.dir;
-        int startX = start.x;
-        int startY = start.y;
-        boolean fits = true;
-        if (direction == 1) {
-            startY -= startCharIndex;
-            startX -= newWordIndex;
-            int x = startX;
-            for (int len = 0; len < word.length(); len++, x++) {
-                if (x < _board.min() || x > _board.max()
-                        || (!_board.isEmpty(x, startY) && _board.getSpace(x, startY) != word.charAt(len))) {
-                    fits = false;
-                    break;
-                }
-            }
-        } else {
-            startX += startCharIndex;
-            startY += newWordIndex;
-            int y = startY;
-            for (int len = 0; len < word.length(); len++, y--) {
-                if (y < _board.min()|| y > _board.max()
-                        || (!_board.isEmpty(startX, y) && _board.getSpace(startX, y) != word.charAt(len))) {
-                    fits = false;
-                    break;
-                }
+        CoordinatePair start = newWordStart(_wordPositions.get(connectWord), startCharIndex, newWordIndex);
+        if (!spanInBounds(start.x, start.y, start.dir, word.length())) {
+            return false;
+        }
+        if (!_board.anyLetters(start.x, start.y, start.dir, word.length())) {
+            return true;
+        }
+        int dx = start.dir == 0 ? 1 : 0;
+        int dy = start.dir == 0 ? 0 : -1;
+        int x = start.x;
+        int y = start.y;
+        for (int i = 0; i < word.length(); i++, x += dx, y += dy) {
+            if (_board.hasLetter(x, y) && _board.getSpace(x, y) != word.charAt(i)) {
+                return false;
             }
         }
-        return fits;
+        return true;
     }
 
     /**
-     * Used in the Player class, returns a List of all legal moves on this board, given a map of letter counts. Uses
+     * Used in the Player class, returns a List of all legal moves on this board, given a Rack of letters. Uses
      * various other methods in the BananaBoard class as helpers in determining whether a certain move is legal or not.
+     * Each anchor letter is added to the given Rack for its anagram query and taken out again afterwards, so the Rack
+     * is unchanged when this method returns.
      */
-    public ArrayList<Move> legalMoves(HashMap<String, Integer> letters) throws FileNotFoundException {
+    public ArrayList<Move> legalMoves(Rack letters) throws FileNotFoundException {
+        long start = System.nanoTime();
         HashSet<Word> allWords = new HashSet<>(_wordPositions.keySet());
         ArrayList<Move> allLegal = new ArrayList<>();
         for (Word w : allWords) {
+            if (generationStopped()) {
+                break;
+            }
             CoordinatePair cp = _wordPositions.get(w);
             int startX = cp.x;
             int startY = cp.y;
@@ -344,14 +502,13 @@ public class BananaBoard {
             boolean incrementY = (wDir == 1);
             String word = w.getWord();
             for (int i = 0; i < word.length(); i++) {
-                HashMap<String, Integer> localLetters = new HashMap<>(letters);
-                if (wDir == 1 && startX != _board.max()) {
+                if (wDir == 1) {
                     if (_board.isEmpty(startX + 1, startY)) {
-                        String letter = _board.getSpace(startX, startY) + "";
-                        localLetters.put(letter, localLetters.getOrDefault(letter, 0) + 1);
-                        HashSet<String> required = new HashSet<>();
-                        required.add(letter);
-                        HashSet<String> possibleWords = Utils.allPossibleWords(localLetters, Utils.getWordList(), required);
+                        char letter = _board.getSpace(startX, startY);
+                        letters.add(letter);
+                        Set<String> possibleWords = Utils.allPossibleWords(letters, letter);
+                        letters.remove(letter);
+                        _metrics.anagramQuery(possibleWords.size());
                         for (String s : possibleWords) {
                             Word addTo = w;
                             String newWord = s;
@@ -360,17 +517,19 @@ public class BananaBoard {
                             Move m = new Move(addTo, addToIndex, newWord, newIndex, 0);
                             if (isLegal(m)) {
                                 allLegal.add(m);
+                            } else {
+                                _metrics.moveRejected();
                             }
                         }
                     }
                     startY--;
-                } else if (wDir == 0 && startY != _board.min()) {
+                } else {
                     if (_board.isEmpty(startX, startY - 1)) {
-                        String letter = _board.getSpace(startX, startY) + "";
-                        localLetters.put(letter, localLetters.getOrDefault(letter, 0) + 1);
-                        HashSet<String> required = new HashSet<>();
-                        required.add(letter);
-                        HashSet<String> possibleWords = Utils.allPossibleWords(localLetters, Utils.getWordList(), required);
+                        char letter = _board.getSpace(startX, startY);
+                        letters.add(letter);
+                        Set<String> possibleWords = Utils.allPossibleWords(letters, letter);
+                        letters.remove(letter);
+                        _metrics.anagramQuery(possibleWords.size());
                         for (String s : possibleWords) {
                             Word addTo = w;
                             String newWord = s;
@@ -379,204 +538,1284 @@ public class BananaBoard {
                             Move m = new Move(addTo, addToIndex, newWord, newIndex, 1);
                             if (isLegal(m)) {
                                 allLegal.add(m);
+                            } else {
+                                _metrics.moveRejected();
                             }
                         }
                     }
                     startX++;
-                } else if ((wDir == 1 && startX == _board.max()) || (wDir == 0 && startY == _board.min())) {
-                    break;
                 }
             }
         }
+        _metrics.movesGenerated(allLegal.size(), System.nanoTime() - start);
         return allLegal;
     }
 
     /**
-     * Returns whether a certain move is legal on this board. Used primarily as a helper method for legalMoves.
-     * @param m Move instance to determine the legality of.
+     * Alternate engine for legalMoves that returns the same Moves, generated by walking a Dawg of all valid words
+     * outward from each anchor letter instead of anagramming the whole rack and checking every candidate with
+     * isLegal. A partial word is abandoned as soon as it stops being a prefix of a valid word, runs off the board,
+     * disagrees with a letter already on the board, runs out of letters, or forms an invalid cross word.
+     *
+     * The Moves from each anchor are cached, so that once the board is formed, only the anchors near the words
+     * placed since the last call, or those last searched with fewer letters than the given Rack, are walked
+     * again. The rest are answered by keeping the cached Moves that the given letters can still make.
+     * @param letters Rack of letters available to form new words.
      */
-    public boolean isLegal(Move m) throws FileNotFoundException {
-        BananaBoard copy = new BananaBoard(this);
-        return copy.addWord(m.getNewWord(), m.getAddTo().getWord(), m.getAddTo().getNum(), m.getAddToIndex(), m.getNewIndex());
+    public ArrayList<Move> legalMovesDawg(Rack letters) throws FileNotFoundException {
+        long start = System.nanoTime();
+        Dawg dawg = Utils.getDawg();
+        int[] counts = letters.toArray();
+        int total = letters.total();
+        ArrayList<Move> allLegal = new ArrayList<>();
+        char[] buffer = new char[total + 1];
+        invalidateMoves();
+        for (Word w : _wordPositions.keySet()) {
+            if (generationStopped()) {
+                break;
+            }
+            CoordinatePair cp = _wordPositions.get(w);
+            int startX = cp.x;
+            int startY = cp.y;
+            String word = w.getWord();
+            for (int i = 0; i < word.length(); i++) {
+                if (cp.dir == 1) {
+                    if (_board.isEmpty(startX + 1, startY)) {
+                        anchorMoves(w, i, startX, startY, 0, dawg, counts, total, buffer, allLegal);
+                    }
+                    startY--;
+                } else {
+                    if (_board.isEmpty(startX, startY - 1)) {
+                        anchorMoves(w, i, startX, startY, 1, dawg, counts, total, buffer, allLegal);
+                    }
+                    startX++;
+                }
+            }
+        }
+        _metrics.movesGenerated(allLegal.size(), System.nanoTime() - start);
+        return allLegal;
     }
 
     /**
-     * Returns whether the first word fits on the board. Used *ONLY FOR THE FIRST WORD*. It will error if
-     * called after a word has already been placed on the board.
-     * @param word String representing the word to check.
+     * Helper method for legalMovesDawg that adds every legal Move crossing the anchor letter at the given index
+     * of the given word to the given List, in the direction given. Uses the anchor's cached Moves if they were
+     * generated with at least as many of each letter as there are in counts, and otherwise walks the Dawg from
+     * the anchor and caches what it finds.
      */
-    public boolean wordFits(String word) {
-        if (_wordPositions.keySet().size() != 0) {
-            throw new BananaException("Only use one arg method to check if the first word fits on the board.");
+    private void anchorMoves(Word w, int index, int x, int y, int dir, Dawg dawg, int[] counts, int total,
+                             char[] buffer, ArrayList<Move> result) throws FileNotFoundException {
+        long key = _board.space(x, y) << 1 | dir;
+        AnchorMoves cached = _moveCache.get(key);
+        if (cached != null && cached._addTo.equals(w) && cached._addToIndex == index && cached.covers(counts)) {
+            cached.addMoves(counts, total, result);
+            return;
+        }
+        Anchor a = new Anchor(w, index, x, y, dir, dawg, counts, buffer);
+        for (int before = 0; before <= total && a.inBounds(-before); before++) {
+            a.extend(dawg.root(), 0, before);
         }
-        return word.length() <= _board._sideLen;
+        cachePut(key, a.toAnchorMoves());
+        result.addAll(a._result);
     }
 
     /**
-     * Convenient helper method that returns the amount of times a certain word has been placed on the board.
-     * Directly uses _wordCounts.
-     * @param word String representing the word to check the count of.
+     * Sets the cached Moves of the anchor with the given key, recording what it replaced if undoMove will need
+     * to put it back.
      */
-    public int wordFrequency(String word) {
-        Integer count = _wordCounts.get(word);
-        if (count == null) {
-            return 0;
-        } else {
-            return count;
+    private void cachePut(long key, AnchorMoves entry) {
+        AnchorMoves previous = _moveCache.put(key, entry);
+        if (_numApplied > 0) {
+            _cacheJournalKeys.add(key);
+            _cacheJournalEntries.add(previous);
         }
     }
 
     /**
-     * Returns the set of all words currently on the board, as Strings.
+     * Records the given spaces, which have just been filled, and the runs of letters through them, so that the
+     * next call to invalidateMoves drops the cached Moves they could change. Nothing is recorded while the cache
+     * is empty, as no entry could then have been made before the spaces were filled.
+     * @param spaces The filled spaces, as consecutive x/y pairs.
+     * @param from The index in spaces of the first filled space.
+     * @param to The index in spaces just past the last filled space.
      */
-    public HashSet<String> getWords() {
-        return new HashSet<String>(_wordCounts.keySet());
+    private void markDirty(int[] spaces, int from, int to) {
+        if (_moveCache.isEmpty()) {
+            return;
+        }
+        int length = to - from;
+        if (_dirtySize + 3 * length > _dirtySpaces.length) {
+            _dirtySpaces = Arrays.copyOf(_dirtySpaces, Math.max(2 * _dirtySpaces.length, _dirtySize + 3 * length));
+        }
+        for (int i = from; i < to; i += 2) {
+            int x = spaces[i];
+            int y = spaces[i + 1];
+            int left = x, right = x, bottom = y, top = y;
+            while (_board.hasLetter(left - 1, y)) {
+                left--;
+            }
+            while (_board.hasLetter(right + 1, y)) {
+                right++;
+            }
+            while (_board.hasLetter(x, bottom - 1)) {
+                bottom--;
+            }
+            while (_board.hasLetter(x, top + 1)) {
+                top++;
+            }
+            _dirtySpaces[_dirtySize++] = x;
+            _dirtySpaces[_dirtySize++] = y;
+            _dirtySpaces[_dirtySize++] = left;
+            _dirtySpaces[_dirtySize++] = right;
+            _dirtySpaces[_dirtySize++] = bottom;
+            _dirtySpaces[_dirtySize++] = top;
+        }
     }
 
     /**
-     * Prints the contents of the board to the standard output.
+     * Drops the cached Moves of every anchor that could be changed by the spaces filled since the cache was last
+     * brought up to date, recording what it drops if undoMove will need to put it back. An anchor's Moves only
+     * depend on the spaces its walk read along the line of its new words, including the runs of letters joined
+     * onto either end, and on the cross words through the empty spaces it read. So an entry is dropped if a
+     * filled space's run of letters along the entry's line overlaps the spaces read, or if the space's run of
+     * letters across the line ends right next to one of the spaces read.
      */
-    public void displayBoard() {
-        System.out.println(this.toString());
+    private void invalidateMoves() {
+        if (_dirtyChecked < _dirtySize && !_moveCache.isEmpty()) {
+            Iterator<Map.Entry<Long, AnchorMoves>> entries = _moveCache.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Long, AnchorMoves> entry = entries.next();
+                if (entry.getValue().changedBy(_dirtySpaces, _dirtyChecked, _dirtySize)) {
+                    if (_numApplied > 0) {
+                        _cacheJournalKeys.add(entry.getKey());
+                        _cacheJournalEntries.add(entry.getValue());
+                    }
+                    entries.remove();
+                }
+            }
+        }
+        if (_numApplied == 0) {
+            _dirtySize = 0;
+        }
+        _dirtyChecked = _dirtySize;
     }
 
     /**
-     * A toString method, returns a String representing the contents of the board.
+     * Takes the cached Moves of the given board, which must hold exactly the same letters and words as this one
+     * with no Moves applied, such as a copy searched with applyMove and undoMove. Lets a search made on a copy
+     * leave its work behind for the next search.
      */
-    public String toString() {
-        return _board.toString();
+    public void takeMoveCache(BananaBoard other) {
+        if (other._numApplied != 0 || other._hash != _hash) {
+            throw new BananaException("Cached Moves can only be taken from a board in the same state.");
+        }
+        _moveCache = new HashMap<>(other._moveCache);
+        _dirtySpaces = Arrays.copyOf(other._dirtySpaces, other._dirtySpaces.length);
+        _dirtySize = other._dirtySize;
+        _dirtyChecked = other._dirtyChecked;
     }
 
     /**
-     * Getter method that returns the side length of the board.
+     * Returns whether placing the letter c in the empty space at the given coordinate leaves a valid word, or
+     * no word at all, running through that space in the given direction.
+     * @param c The letter to place.
+     * @param x The x coordinate of the space.
+     * @param y The y coordinate of the space.
+     * @param dir The direction of the word to check. 1 for vertical, 0 for horizontal.
      */
-    public int getDim() {
-        return _board._sideLen;
+    private boolean crossWordValid(char c, int x, int y, int dir) throws FileNotFoundException {
+        int dx = dir == 0 ? 1 : 0;
+        int dy = dir == 0 ? 0 : -1;
+        if (!_board.hasLetter(x - dx, y - dy) && !_board.hasLetter(x + dx, y + dy)) {
+            return true;
+        }
+        return lineValid(String.valueOf(c), x, y, dir);
     }
 
     /**
-     * Private class used to facilitate operations involving adding and removing characters from spaces on the board.
+     * Returns whether the given letters, written starting at the given coordinate, would join the letters
+     * already on the board just before and after them into a valid word. A single letter on its own is always
+     * valid. The board is read, but not changed, and letters already under the given ones are ignored.
+     * @param dir The direction the letters are written in. 1 for vertical, 0 for horizontal.
+     */
+    private boolean lineValid(CharSequence letters, int startX, int startY, int dir) throws FileNotFoundException {
+        int dx = dir == 0 ? 1 : 0;
+        int dy = dir == 0 ? 0 : -1;
+        int bx = startX - dx, by = startY - dy;
+        while (_board.hasLetter(bx, by)) {
+            bx -= dx;
+            by -= dy;
+        }
+        int ax = startX + letters.length() * dx, ay = startY + letters.length() * dy;
+        StringBuilder full = new StringBuilder();
+        for (int x = bx + dx, y = by + dy; x != startX || y != startY; x += dx, y += dy) {
+            full.append(_board.getSpace(x, y));
+        }
+        full.append(letters);
+        while (_board.hasLetter(ax, ay)) {
+            full.append(_board.getSpace(ax, ay));
+            ax += dx;
+            ay += dy;
+        }
+        return full.length() < 2 || Utils.isWord(full.toString());
+    }
+
+    /**
+     * Returns whether the given coordinate is on the board.
      */
-    private class Grid {
+    private boolean inBounds(int x, int y) {
+        return _board.inBounds(x, y);
+    }
 
-        /** A 2D char array that represents the contents of the board.*/
-        private char[][] _grid;
-        /** The Integers representing the relative centers of the grid for both the x and y axes.*/
-        private int _centerX, _centerY;
-        /** The Integer representing the length of the side of the square grid.*/
-        private int _sideLen;
+    /**
+     * Returns whether every one of the given number of spaces, starting at the given coordinate and running in
+     * the given direction, is on the board.
+     * @param dir The direction of the spaces. 1 for vertical, running down, 0 for horizontal, running right.
+     */
+    private boolean spanInBounds(int x, int y, int dir, int length) {
+        if (dir == 0) {
+            return inBounds(x, y) && inBounds(x + length - 1, y);
+        } else {
+            return inBounds(x, y) && inBounds(x, y - length + 1);
+        }
+    }
+
+    /**
+     * Helper class for legalMovesDawg that holds the state needed to generate every Move that crosses one anchor
+     * letter on the board. Positions along the new word are measured from the anchor, so position 0 is the
+     * anchor itself, negative positions come before it and positive positions come after it.
+     */
+    private class Anchor {
+        /** The word on the board that the anchor letter belongs to.*/
+        private Word _addTo;
+        /** The index of the anchor letter in _addTo.*/
+        private int _addToIndex;
+        /** The coordinate of the anchor letter.*/
+        private int _x, _y;
+        /** The direction of the new words, and the step between their letters on the board.*/
+        private int _dir, _dx, _dy;
+        /** The anchor letter.*/
+        private char _letter;
+        /** The Dawg of all valid words.*/
+        private Dawg _dawg;
+        /** The remaining letter counts, indexed from A. Consumed and restored as the walk goes deeper.*/
+        private int[] _counts;
+        /** The letters of the word being built.*/
+        private char[] _buffer;
+        /** Every legal Move found.*/
+        private ArrayList<Move> _result;
+        /** The first and last positions along the new words that the walk has read, starting at the anchor.*/
+        private int _first, _last;
 
         /**
-         * Default constructor for the Grid Class, sets the side length to 33 by default.
+         * Constructor that sets up a walk from the letter at the given index of the given word.
          */
-        private Grid() {
-            _grid = new char[33][33];
-            _centerX = 16;
-            _centerY = 16;
-            _sideLen = 33;
+        private Anchor(Word addTo, int addToIndex, int x, int y, int dir, Dawg dawg, int[] counts,
+                       char[] buffer) {
+            _addTo = addTo;
+            _addToIndex = addToIndex;
+            _x = x;
+            _y = y;
+            _dir = dir;
+            _dx = dir == 0 ? 1 : 0;
+            _dy = dir == 0 ? 0 : -1;
+            _letter = _board.getSpace(x, y);
+            _dawg = dawg;
+            _counts = counts;
+            _buffer = buffer;
+            _result = new ArrayList<>();
         }
 
         /**
-         * Alternate constructor for the Grid class, allows client to specify sideLength.
-         * @param dim The desired side length of the square grid.
+         * Returns whether the given position along the new word is on the board.
          */
-        private Grid(int dim) {
-            _grid = new char[dim][dim];
-            _centerX = dim / 2;
-            _centerY = dim / 2;
-            _sideLen = dim;
+        private boolean inBounds(int pos) {
+            return BananaBoard.this.inBounds(_x + pos * _dx, _y + pos * _dy);
         }
 
         /**
-         * Copy Constructor used to facilitate deep copies in higher level copy constructors, such as
-         * the BananaBoard copy constructor.
-         * @param g The Grid instance to deep copy all data from.
+         * Returns whether the space at the given position along the new word is empty. Positions off the board
+         * count as empty, but the position can be at most one space off the board.
          */
-        private Grid(Grid g) {
-            _centerX = g._centerX;
-            _centerY = g._centerY;
-            _sideLen = g._sideLen;
-            _grid = new char[g._sideLen][g._sideLen];
-            for (int row = 0; row < g._grid.length; row++) {
-                for (int col = 0; col < g._grid[0].length; col++) {
-                    _grid[row][col] = g._grid[row][col];
+        private boolean isEmpty(int pos) {
+            return !_board.hasLetter(_x + pos * _dx, _y + pos * _dy);
+        }
+
+        /**
+         * Recursively extends the word being built by one letter, following the Dawg from the given node. The
+         * first `before` letters must come before the anchor and can't be the anchor letter, so that the anchor
+         * is always the first occurrence of its letter in the new word, just as in legalMoves.
+         * @param node The Dawg node reached by the letters placed so far.
+         * @param index The index in the new word of the next letter to place.
+         * @param before The number of letters in the new word before the anchor.
+         */
+        private void extend(int node, int index, int before) throws FileNotFoundException {
+            int pos = index - before;
+            if (pos > 0 && _dawg.isTerminal(node)) {
+                finish(index, before);
+            }
+            read(pos);
+            if (!inBounds(pos)) {
+                return;
+            }
+            if (pos < 0 && !_dawg.reachesLetter(node, _letter, -pos)) {
+                return;
+            }
+            if (pos == 0) {
+                int next = _dawg.child(node, _letter);
+                if (next != -1) {
+                    _buffer[index] = _letter;
+                    extend(next, index + 1, before);
                 }
+                return;
+            }
+            int x = _x + pos * _dx;
+            int y = _y + pos * _dy;
+            boolean empty = _board.isEmpty(x, y);
+            for (int e = _dawg.edgeStart(node); e < _dawg.edgeEnd(node); e++) {
+                char c = _dawg.edgeLabel(e);
+                if ((pos < 0 && c == _letter) || _counts[c - 'A'] == 0) {
+                    continue;
+                }
+                if (empty ? !crossWordValid(c, x, y, 1 - _dir) : _board.getSpace(x, y) != c) {
+                    continue;
+                }
+                _counts[c - 'A']--;
+                _buffer[index] = c;
+                extend(_dawg.edgeTarget(e), index + 1, before);
+                _counts[c - 'A']++;
             }
         }
 
         /**
-         * Returns the maximum x/y coordinate value for this board.
+         * Called when the letters in the buffer spell a full word of the given length. Adds the Move placing that
+         * word if the full line of letters it joins, including letters already on the board just before or after
+         * it, is a valid word.
          */
-        private int max() {
-            return _sideLen / 2;
+        private void finish(int length, int before) throws FileNotFoundException {
+            int first = -before;
+            int last = length - before - 1;
+            read(first - 1);
+            read(last + 1);
+            if (!isEmpty(first - 1) || !isEmpty(last + 1)) {
+                if (!lineValid(CharBuffer.wrap(_buffer, 0, length), _x + first * _dx, _y + first * _dy, _dir)) {
+                    _metrics.moveRejected();
+                    return;
+                }
+            }
+            _result.add(new Move(_addTo, _addToIndex, new String(_buffer, 0, length), before, _dir));
         }
 
         /**
-         * Returns the minimum x/y coordinate value for this baard.
+         * Records that the walk read the space at the given position.
          */
-        private int min() {
-            return (_sideLen / 2) * -1;
+        private void read(int pos) {
+            _first = Math.min(_first, pos);
+            _last = Math.max(_last, pos);
         }
 
         /**
-         * Sets the space of a given coordinate on the board to the desired value.
-         * @param c char value to set on the given space.
-         * @param xPos x coordinate of the space to set.
-         * @param yPos y coordinate of the space to set.
+         * Returns the Moves found by the walk, ready to be cached, once it is finished.
          */
-        private void setSpace(char c, int xPos, int yPos) {
-            _grid[_centerX + xPos][_centerY + yPos] = c;
+        private AnchorMoves toAnchorMoves() {
+            int line = _dir == 0 ? _y : _x;
+            int first = _dir == 0 ? _x + _first : _y - _last;
+            int last = _dir == 0 ? _x + _last : _y - _first;
+            return new AnchorMoves(_addTo, _addToIndex, _dir, line, first, last, _counts.clone(), _result);
         }
+    }
+
+    /**
+     * The Moves generated from one anchor, as cached by legalMovesDawg, along with what they depend on: the
+     * letters they were generated with, and the spaces along their line that were read to find them. Never
+     * changed once made, so copies of a board can share them.
+     */
+    private static class AnchorMoves {
+        /** The anchor's word, and the index of the anchor letter in it.*/
+        private final Word _addTo;
+        private final int _addToIndex;
+        /** The direction of the new words. 1 for vertical, 0 for horizontal.*/
+        private final int _dir;
+        /** The y coordinate of the row, or the x coordinate of the column, that the new words are on.*/
+        private final int _line;
+        /** The lowest and highest x coordinates, or y coordinates, of the spaces on _line that were read.*/
+        private final int _first, _last;
+        /** The letter counts, indexed from A, that the Moves were generated with.*/
+        private final int[] _counts;
+        /** The Moves, in the order they were generated.*/
+        private final ArrayList<Move> _moves;
 
         /**
-         * Returns the char value of the space of a given coordinate.
-         * @param xPos x coordinate of the space to get.
-         * @param yPos y coordinate of the space to get.
+         * Constructor that stores the given Moves and what they depend on.
          */
-        private char getSpace(int xPos, int yPos) {
-            return _grid[_centerX + xPos][_centerY + yPos];
+        private AnchorMoves(Word addTo, int addToIndex, int dir, int line, int first, int last, int[] counts,
+                            ArrayList<Move> moves) {
+            _addTo = addTo;
+            _addToIndex = addToIndex;
+            _dir = dir;
+            _line = line;
+            _first = first;
+            _last = last;
+            _counts = counts;
+            _moves = moves;
         }
 
         /**
-         * Returns whether the space of a given coordinate is empty.
+         * Returns whether these Moves could be changed by any of the filled spaces recorded in the given part of
+         * the given array, laid out as in _dirtySpaces.
          */
-        private boolean isEmpty(int xPos, int yPos) {
-            return getSpace(xPos, yPos) == '\u0000';
+        private boolean changedBy(int[] spaces, int from, int to) {
+            for (int i = from; i < to; i += 6) {
+                int along = _dir == 0 ? spaces[i] : spaces[i + 1];
+                int across = _dir == 0 ? spaces[i + 1] : spaces[i];
+                int runStart = _dir == 0 ? spaces[i + 2] : spaces[i + 4];
+                int runEnd = _dir == 0 ? spaces[i + 3] : spaces[i + 5];
+                int acrossStart = _dir == 0 ? spaces[i + 4] : spaces[i + 2];
+                int acrossEnd = _dir == 0 ? spaces[i + 5] : spaces[i + 3];
+                if (across == _line ? runStart <= _last && runEnd >= _first
+                        : (_line == acrossStart - 1 || _line == acrossEnd + 1) && along >= _first && along <= _last) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         /**
-         * Prints the contents of the grid onto the standard output.
+         * Returns whether these Moves were generated with at least as many of each letter as the given counts.
          */
-        private void displayGrid() {
-            for (int y = _sideLen - 1; y >= 0; y--) {
-                for (int x = 0; x < _sideLen; x++) {
-                    char space = _grid[x][y];
-                    if (space == '\u0000') {
-                        space = '-';
-                    }
-                    System.out.print(space + " ");
+        private boolean covers(int[] counts) {
+            for (int i = 0; i < 26; i++) {
+                if (counts[i] > _counts[i]) {
+                    return false;
                 }
-                System.out.println();
             }
+            return true;
         }
 
         /**
-         * Method that returns a String representing the contents of the Grid.
+         * Adds the Moves that can be made with the given letter counts and total to the given List, in the order
+         * they were generated. These are exactly the Moves a walk with those letters would find: those with no
+         * more letters before the anchor than the total, whose letters other than the anchor letter are all in
+         * the counts. The counts are used as scratch space, and are unchanged when this method returns.
          */
-        @Override
-        public String toString() {
-            String result = "";
-            for (int y = _sideLen - 1; y >= 0; y--) {
-                for (int x = 0; x < _sideLen; x++) {
-                    char space = _grid[x][y];
-                    if (space == '\u0000') {
-                        space = '-';
+        private void addMoves(int[] counts, int total, ArrayList<Move> result) {
+            if (Arrays.equals(counts, _counts)) {
+                result.addAll(_moves);
+                return;
+            }
+            for (Move move : _moves) {
+                String word = move.getNewWord();
+                int anchor = move.getNewIndex();
+                if (anchor > total) {
+                    continue;
+                }
+                int used = 0;
+                while (used < word.length() && (used == anchor || counts[word.charAt(used) - 'A']-- > 0)) {
+                    used++;
+                }
+                for (int i = 0; i < used; i++) {
+                    if (i != anchor) {
+                        counts[word.charAt(i) - 'A']++;
                     }
-                    result += space + " ";
                 }
-                result += "\n";
+                if (used < word.length()) {
+                    counts[word.charAt(used) - 'A']++;
+                } else {
+                    result.add(move);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a certain move is legal on this board. Used primarily as a helper method for legalMoves.
+     * @param m Move instance to determine the legality of.
+     */
+    public boolean isLegal(Move m) throws FileNotFoundException {
+        return canAddWord(m.getNewWord(), m.getAddTo().getWord(), m.getAddTo().getNum(), m.getAddToIndex(), m.getNewIndex());
+    }
+
+    /**
+     * Returns whether the first word fits on the board. Used *ONLY FOR THE FIRST WORD*. It will error if
+     * called after a word has already been placed on the board.
+     * @param word String representing the word to check.
+     */
+    public boolean wordFits(String word) {
+        if (_wordPositions.keySet().size() != 0) {
+            throw new BananaException("Only use one arg method to check if the first word fits on the board.");
+        }
+        return _board.sideLength() == UNBOUNDED || word.length() <= _board.sideLength();
+    }
+
+    /**
+     * Convenient helper method that returns the amount of times a certain word has been placed on the board.
+     * Directly uses _wordCounts.
+     * @param word String representing the word to check the count of.
+     */
+    public int wordFrequency(String word) {
+        Integer count = _wordCounts.get(word);
+        if (count == null) {
+            return 0;
+        } else {
+            return count;
+        }
+    }
+
+    /**
+     * Returns the Zobrist hash of the letters and word placements on the board. Boards with the same
+     * words placed in the same spaces always have the same hash, whatever order the words were added in.
+     */
+    public long zobristHash() {
+        return _hash;
+    }
+
+    /**
+     * Returns the total of the word scores of every word on the board, counting words that appear more than once
+     * once per appearance. Kept as a running total, so that scoring a board doesn't visit its words.
+     */
+    public int score() {
+        return _score;
+    }
+
+    /**
+     * Returns a bitmask with bit 0 set if there is an A anywhere on the board, bit 1 set if there is a B, and so
+     * on, like Rack.mask.
+     */
+    public int letterMask() {
+        int mask = 0;
+        for (int i = 0; i < 26; i++) {
+            if (_letterCounts[i] > 0) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Adds the given amount to the number of spaces holding the given letter.
+     */
+    private void countLetter(char c, int amount) {
+        if (c >= 'A' && c <= 'Z') {
+            _letterCounts[c - 'A'] += amount;
+        }
+    }
+
+    /**
+     * Returns the set of all words currently on the board, as Strings.
+     */
+    public HashSet<String> getWords() {
+        return new HashSet<String>(_wordCounts.keySet());
+    }
+
+    /**
+     * Prints the contents of the board to the standard output.
+     */
+    public void displayBoard() {
+        System.out.println(this.toString());
+    }
+
+    /**
+     * A toString method, returns a String representing the contents of the board.
+     */
+    public String toString() {
+        return _board.toString();
+    }
+
+    /**
+     * Returns the rows of the board, top first, cropped to the smallest rectangle holding every letter, with
+     * a - for each empty space. An empty board has no rows.
+     */
+    public ArrayList<String> rows() {
+        int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+        int bottom = Integer.MAX_VALUE, top = Integer.MIN_VALUE;
+        for (int x = _board.left(); x <= _board.right(); x++) {
+            for (int y = _board.bottom(); y <= _board.top(); y++) {
+                if (_board.hasLetter(x, y)) {
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                    bottom = Math.min(bottom, y);
+                    top = Math.max(top, y);
+                }
+            }
+        }
+        ArrayList<String> rows = new ArrayList<>();
+        for (int y = top; y >= bottom; y--) {
+            StringBuilder row = new StringBuilder();
+            for (int x = left; x <= right; x++) {
+                row.append(_board.hasLetter(x, y) ? _board.getSpace(x, y) : '-');
+            }
+            rows.add(row.toString());
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the side length of the board, and the letters, starting position and direction of every word on it,
+     * to the given output, for a Checkpoint. Repeated words are written in the order they are numbered, so that
+     * readPlacements numbers them the same way. Must not be called while a Move made with applyMove is in place.
+     */
+    void writePlacements(DataOutputStream out) throws IOException {
+        ArrayList<Word> words = new ArrayList<>(_wordPositions.keySet());
+        words.sort(Comparator.comparing(Word::getWord).thenComparingInt(Word::getNum));
+        out.writeInt(getDim());
+        out.writeInt(words.size());
+        for (Word w : words) {
+            CoordinatePair cp = _wordPositions.get(w);
+            out.writeUTF(w.getWord());
+            out.writeInt(cp.x);
+            out.writeInt(cp.y);
+            out.writeByte(cp.dir);
+        }
+    }
+
+    /**
+     * Returns a board with the same size and words as the one written to the given input by writePlacements.
+     * Since a board's letters, hash and score only depend on which words are where, it is the same board.
+     */
+    static BananaBoard readPlacements(DataInputStream in) throws IOException {
+        BananaBoard board = new BananaBoard(in.readInt());
+        for (int count = in.readInt(); count > 0; count--) {
+            String word = in.readUTF();
+            int x = in.readInt();
+            int y = in.readInt();
+            int dir = in.readByte();
+            if (!board.spanInBounds(x, y, dir, word.length())) {
+                throw new BananaException("A saved word doesn't fit on the board.");
+            }
+            board.placeWord(word, x, y, dir, false);
+        }
+        return board;
+    }
+
+    /**
+     * Returns the metrics this board records its work into.
+     */
+    public SearchMetrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * Sets the metrics this board, and every copy made of it from now on, records its work into.
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     * Sets the check that tells move generation on this board, and every copy made of it from now on, to stop
+     * early, such as when a solve is cancelled or runs out of time. legalMoves and legalMovesDawg ask it before
+     * the anchors of each word on the board, and once it returns true, return only the Moves found so far. A
+     * check of null never stops.
+     */
+    public void setStopCheck(BooleanSupplier stopped) {
+        _stopped = stopped;
+    }
+
+    /**
+     * Returns whether move generation should stop early, as told by the check given to setStopCheck.
+     */
+    private boolean generationStopped() {
+        return _stopped != null && _stopped.getAsBoolean();
+    }
+
+    /**
+     * Getter method that returns the side length of the board, or UNBOUNDED if it has no preset size.
+     */
+    public int getDim() {
+        return _board.sideLength();
+    }
+
+    /**
+     * Private class used to facilitate operations involving adding and removing characters from spaces on the board.
+     * A DenseGrid stores every space of a square board of a fixed size, while a SparseGrid has no edges and only
+     * stores the parts of the board near its letters.
+     */
+    private abstract class Grid {
+
+        /**
+         * Returns a deep copy of this Grid, used to facilitate deep copies in higher level copy constructors, such
+         * as the BananaBoard copy constructor.
+         */
+        abstract Grid copy();
+
+        /**
+         * Returns the side length of the square grid, or UNBOUNDED if it has no edges.
+         */
+        abstract int sideLength();
+
+        /**
+         * Returns whether the space of a given coordinate is on the board.
+         */
+        abstract boolean inBounds(int xPos, int yPos);
+
+        /**
+         * Returns a number that identifies the space of a given coordinate, which may be one space off the board.
+         */
+        abstract long space(int xPos, int yPos);
+
+        /**
+         * Sets the space of a given coordinate on the board to the desired value.
+         * @param c char value to set on the given space, or '\u0000' to empty it.
+         * @param xPos x coordinate of the space to set.
+         * @param yPos y coordinate of the space to set.
+         */
+        abstract void setSpace(char c, int xPos, int yPos);
+
+        /**
+         * Returns the char value of the space of a given coordinate, or '\u0000' if it is empty.
+         * @param xPos x coordinate of the space to get.
+         * @param yPos y coordinate of the space to get.
+         */
+        abstract char getSpace(int xPos, int yPos);
+
+        /**
+         * Returns whether the space of a given coordinate is on the board and empty. Spaces one space past the
+         * edge of the board are never empty.
+         */
+        abstract boolean isEmpty(int xPos, int yPos);
+
+        /**
+         * Returns whether the space of a given coordinate holds a letter. Spaces one space past the edge of the
+         * board never do.
+         */
+        abstract boolean hasLetter(int xPos, int yPos);
+
+        /**
+         * Returns whether any of the given number of spaces, starting at the given coordinate and running in
+         * the given direction, holds a letter. Every one of the spaces must be on the board.
+         * @param dir The direction of the spaces. 1 for vertical, running down, 0 for horizontal, running right.
+         */
+        abstract boolean anyLetters(int xPos, int yPos, int dir, int length);
+
+        /**
+         * Returns the lowest and highest x and y coordinates of the part of the board that can hold letters. Every
+         * letter on the board is inside it.
+         */
+        abstract int left();
+        abstract int right();
+        abstract int bottom();
+        abstract int top();
+
+        /**
+         * Returns the bits marking which spaces of the given row hold a letter, from the left, for the 64 spaces
+         * starting at x coordinate left() + 64 * chunk.
+         */
+        abstract long rowBits(int yPos, int chunk);
+
+        /**
+         * Returns the number of chunks of 64 spaces that rowBits needs to cover every space from left() to right().
+         */
+        int lineLongs() {
+            return (right() - left() + 64) >>> 6;
+        }
+
+        /**
+         * Prints the contents of the grid onto the standard output.
+         */
+        void displayGrid() {
+            System.out.print(toString());
+        }
+
+        /**
+         * Method that returns a String representing the contents of the Grid.
+         */
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            for (int y = top(); y >= bottom(); y--) {
+                for (int x = left(); x <= right(); x++) {
+                    char space = getSpace(x, y);
+                    if (space == '\u0000') {
+                        space = '-';
+                    }
+                    result.append(space).append(' ');
+                }
+                result.append('\n');
+            }
+            return result.toString();
+        }
+    }
+
+    /**
+     * A Grid of a fixed, square size. The spaces are stored in one flat byte array with a border of sentinel spaces
+     * one wide all the way around the board, so that looking one space past the edge of the board is safe and
+     * always finds no letter. Alongside it, each row and column keeps a bitmask of which of its spaces hold a
+     * letter, so that whether a stretch of spaces is empty is a few bitwise operations.
+     */
+    private class DenseGrid extends Grid {
+
+        /** The value of an empty space in _cells.*/
+        private static final byte EMPTY = 0;
+        /** The value of a space in the border around the board in _cells.*/
+        private static final byte BORDER = -1;
+
+        /** The contents of the board and its border, a column at a time, with x increasing from one column
+         * to the next and y increasing within a column. Letters are stored as their char values.*/
+        private byte[] _cells;
+        /** The number of spaces in each column of _cells, counting the border.*/
+        private int _stride;
+        /** For each row, from the bottom, _lineLongs longs whose bits mark the spaces in that row that hold a
+         * letter, from the left.*/
+        private long[] _rowBits;
+        /** For each column, from the left, _lineLongs longs whose bits mark the spaces in that column that hold
+         * a letter, from the bottom.*/
+        private long[] _colBits;
+        /** The number of longs needed for the bits of one row or column.*/
+        private int _lineLongs;
+        /** The Integers representing the relative centers of the grid for both the x and y axes.*/
+        private int _centerX, _centerY;
+        /** The Integer representing the length of the side of the square grid.*/
+        private int _sideLen;
+
+        /**
+         * Default constructor for the DenseGrid Class, sets the side length to 33 by default.
+         */
+        private DenseGrid() {
+            this(33);
+        }
+
+        /**
+         * Alternate constructor for the DenseGrid class, allows client to specify sideLength.
+         * @param dim The desired side length of the square grid.
+         */
+        private DenseGrid(int dim) {
+            _centerX = dim / 2;
+            _centerY = dim / 2;
+            _sideLen = dim;
+            _stride = dim + 2;
+            _cells = new byte[_stride * _stride];
+            Arrays.fill(_cells, BORDER);
+            for (int col = 1; col <= dim; col++) {
+                Arrays.fill(_cells, col * _stride + 1, col * _stride + 1 + dim, EMPTY);
+            }
+            _lineLongs = (dim + 63) >>> 6;
+            _rowBits = new long[dim * _lineLongs];
+            _colBits = new long[dim * _lineLongs];
+        }
+
+        /**
+         * Copy Constructor used to facilitate deep copies in higher level copy constructors, such as
+         * the BananaBoard copy constructor.
+         * @param g The DenseGrid instance to deep copy all data from.
+         */
+        private DenseGrid(DenseGrid g) {
+            _centerX = g._centerX;
+            _centerY = g._centerY;
+            _sideLen = g._sideLen;
+            _stride = g._stride;
+            _lineLongs = g._lineLongs;
+            _cells = new byte[g._cells.length];
+            System.arraycopy(g._cells, 0, _cells, 0, _cells.length);
+            _rowBits = new long[g._rowBits.length];
+            System.arraycopy(g._rowBits, 0, _rowBits, 0, _rowBits.length);
+            _colBits = new long[g._colBits.length];
+            System.arraycopy(g._colBits, 0, _colBits, 0, _colBits.length);
+        }
+
+        @Override
+        Grid copy() {
+            return new DenseGrid(this);
+        }
+
+        @Override
+        int sideLength() {
+            return _sideLen;
+        }
+
+        /**
+         * Returns the maximum x/y coordinate value for this board. On a board with an even side length, this is one
+         * less than -min(), since there is no middle space.
+         */
+        private int max() {
+            return _sideLen - 1 - _centerX;
+        }
+
+        /**
+         * Returns the minimum x/y coordinate value for this baard.
+         */
+        private int min() {
+            return (_sideLen / 2) * -1;
+        }
+
+        @Override
+        int left() {
+            return min();
+        }
+
+        @Override
+        int right() {
+            return max();
+        }
+
+        @Override
+        int bottom() {
+            return min();
+        }
+
+        @Override
+        int top() {
+            return max();
+        }
+
+        @Override
+        int lineLongs() {
+            return _lineLongs;
+        }
+
+        @Override
+        boolean inBounds(int xPos, int yPos) {
+            return xPos >= min() && xPos <= max() && yPos >= min() && yPos <= max();
+        }
+
+        /**
+         * Returns the index in _cells of the space at the given coordinate, which may be on the board or in
+         * the border around it.
+         */
+        private int cell(int xPos, int yPos) {
+            return (_centerX + xPos + 1) * _stride + _centerY + yPos + 1;
+        }
+
+        @Override
+        long space(int xPos, int yPos) {
+            return cell(xPos, yPos);
+        }
+
+        @Override
+        void setSpace(char c, int xPos, int yPos) {
+            _cells[cell(xPos, yPos)] = (byte) c;
+            int col = _centerX + xPos;
+            int row = _centerY + yPos;
+            long colBit = 1L << col;
+            long rowBit = 1L << row;
+            if (c == '\u0000') {
+                _rowBits[row * _lineLongs + (col >>> 6)] &= ~colBit;
+                _colBits[col * _lineLongs + (row >>> 6)] &= ~rowBit;
+            } else {
+                _rowBits[row * _lineLongs + (col >>> 6)] |= colBit;
+                _colBits[col * _lineLongs + (row >>> 6)] |= rowBit;
+            }
+        }
+
+        @Override
+        char getSpace(int xPos, int yPos) {
+            byte b = _cells[cell(xPos, yPos)];
+            return b > 0 ? (char) b : '\u0000';
+        }
+
+        @Override
+        boolean isEmpty(int xPos, int yPos) {
+            return _cells[cell(xPos, yPos)] == EMPTY;
+        }
+
+        @Override
+        boolean hasLetter(int xPos, int yPos) {
+            return _cells[cell(xPos, yPos)] > 0;
+        }
+
+        @Override
+        boolean anyLetters(int xPos, int yPos, int dir, int length) {
+            if (dir == 0) {
+                int from = _centerX + xPos;
+                return anyBits(_rowBits, (_centerY + yPos) * _lineLongs, from, from + length - 1);
+            } else {
+                int to = _centerY + yPos;
+                return anyBits(_colBits, (_centerX + xPos) * _lineLongs, to - length + 1, to);
+            }
+        }
+
+        /**
+         * Helper method for anyLetters that returns whether any of the bits from index from to index to, inclusive,
+         * of the line of bits starting at the given offset in the given array are set.
+         */
+        private boolean anyBits(long[] bits, int offset, int from, int to) {
+            for (int i = from >>> 6; i <= to >>> 6; i++) {
+                long word = bits[offset + i];
+                if (i == from >>> 6) {
+                    word &= -1L << from;
+                }
+                if (i == to >>> 6) {
+                    word &= -1L >>> (63 - (to & 63));
+                }
+                if (word != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        long rowBits(int yPos, int chunk) {
+            return _rowBits[(_centerY + yPos) * _lineLongs + chunk];
+        }
+    }
+
+    /**
+     * A Grid with no edges, for boards with no preset size. The board is cut into square chunks of CHUNK by CHUNK
+     * spaces, and only the chunks that have ever held a letter are stored, in a directory of chunks that grows to
+     * cover them. So a board costs memory, and copying, validating and printing it cost time, in proportion to the
+     * area around its letters rather than to the size the board would need to be to hold them. Chunks are shared
+     * between a SparseGrid and its copies until one of them writes to it, so a copy only copies the directory.
+     */
+    private class SparseGrid extends Grid {
+
+        /** The base 2 log of CHUNK.*/
+        private static final int CHUNK_BITS = 5;
+        /** The side length of a chunk, which is also the number of bits in an int.*/
+        private static final int CHUNK = 1 << CHUNK_BITS;
+        /** The largest x/y coordinate value allowed, or the negative of the smallest, which keeps every number
+         * returned by space well within a long.*/
+        private static final int LIMIT = 1 << 24;
+
+        /** The chunks, a row of chunks at a time from the bottom, with x increasing within a row. Chunks that
+         * have never held a letter are null.*/
+        private Chunk[] _chunks;
+        /** The chunk coordinates, each a coordinate divided by CHUNK and rounded down, of the bottom left chunk
+         * in _chunks, and the number of chunks across and up that _chunks covers.*/
+        private int _chunkLeft, _chunkBottom, _chunksWide, _chunksHigh;
+        /** The lowest and highest x and y coordinates of every space that has held a letter. The box is
+         * empty, with _left greater than _right, until the first letter is set.*/
+        private int _left, _right, _bottom, _top;
+        /** Marks the chunks this SparseGrid may write to without copying them first. A new owner is made
+         * each time this grid is copied, so that neither it nor the copy writes to the chunks they share.*/
+        private Object _owner;
+
+        /**
+         * Constructor that creates an empty SparseGrid.
+         */
+        private SparseGrid() {
+            _chunks = new Chunk[0];
+            _left = Integer.MAX_VALUE;
+            _right = Integer.MIN_VALUE;
+            _bottom = Integer.MAX_VALUE;
+            _top = Integer.MIN_VALUE;
+            _owner = new Object();
+        }
+
+        /**
+         * Copy Constructor, shares every chunk of the given SparseGrid, which from now on copies a chunk before
+         * writing to it, just as this one does.
+         * @param g The SparseGrid instance to copy.
+         */
+        private SparseGrid(SparseGrid g) {
+            _chunks = g._chunks.clone();
+            _chunkLeft = g._chunkLeft;
+            _chunkBottom = g._chunkBottom;
+            _chunksWide = g._chunksWide;
+            _chunksHigh = g._chunksHigh;
+            _left = g._left;
+            _right = g._right;
+            _bottom = g._bottom;
+            _top = g._top;
+            _owner = new Object();
+            g._owner = new Object();
+        }
+
+        @Override
+        Grid copy() {
+            return new SparseGrid(this);
+        }
+
+        @Override
+        int sideLength() {
+            return UNBOUNDED;
+        }
+
+        @Override
+        int left() {
+            return _left;
+        }
+
+        @Override
+        int right() {
+            return _right;
+        }
+
+        @Override
+        int bottom() {
+            return _bottom;
+        }
+
+        @Override
+        int top() {
+            return _top;
+        }
+
+        @Override
+        boolean inBounds(int xPos, int yPos) {
+            return xPos > -LIMIT && xPos < LIMIT && yPos > -LIMIT && yPos < LIMIT;
+        }
+
+        @Override
+        long space(int xPos, int yPos) {
+            return (long) (xPos + LIMIT) << 26 | (yPos + LIMIT);
+        }
+
+        /**
+         * Returns the chunk holding the space of a given coordinate, or null if it has never held a letter.
+         */
+        private Chunk chunk(int xPos, int yPos) {
+            int i = (xPos >> CHUNK_BITS) - _chunkLeft;
+            int j = (yPos >> CHUNK_BITS) - _chunkBottom;
+            if (i < 0 || j < 0 || i >= _chunksWide || j >= _chunksHigh) {
+                return null;
+            }
+            return _chunks[j * _chunksWide + i];
+        }
+
+        @Override
+        void setSpace(char c, int xPos, int yPos) {
+            Chunk chunk = chunk(xPos, yPos);
+            if (c == '\u0000' && chunk == null) {
+                return;
+            }
+            if (chunk == null || chunk._owner != _owner) {
+                chunk = chunk == null ? new Chunk(_owner) : new Chunk(chunk, _owner);
+                putChunk(xPos >> CHUNK_BITS, yPos >> CHUNK_BITS, chunk);
+            }
+            chunk.set(c, xPos & (CHUNK - 1), yPos & (CHUNK - 1));
+            if (c != '\u0000') {
+                _left = Math.min(_left, xPos);
+                _right = Math.max(_right, xPos);
+                _bottom = Math.min(_bottom, yPos);
+                _top = Math.max(_top, yPos);
+            }
+        }
+
+        /**
+         * Stores the given chunk at the given chunk coordinates, growing the directory to cover them if it must,
+         * by at least double in each direction it grows, so that a board growing steadily is seldom regrown.
+         */
+        private void putChunk(int cx, int cy, Chunk chunk) {
+            if (cx < _chunkLeft || cy < _chunkBottom || cx >= _chunkLeft + _chunksWide
+                    || cy >= _chunkBottom + _chunksHigh) {
+                int left = _chunksWide == 0 ? cx : Math.min(cx, _chunkLeft);
+                int bottom = _chunksHigh == 0 ? cy : Math.min(cy, _chunkBottom);
+                int right = _chunksWide == 0 ? cx : Math.max(cx, _chunkLeft + _chunksWide - 1);
+                int top = _chunksHigh == 0 ? cy : Math.max(cy, _chunkBottom + _chunksHigh - 1);
+                if (cx < _chunkLeft) {
+                    left = Math.min(left, right - 2 * _chunksWide + 1);
+                } else if (cx >= _chunkLeft + _chunksWide && _chunksWide > 0) {
+                    right = Math.max(right, left + 2 * _chunksWide - 1);
+                }
+                if (cy < _chunkBottom) {
+                    bottom = Math.min(bottom, top - 2 * _chunksHigh + 1);
+                } else if (cy >= _chunkBottom + _chunksHigh && _chunksHigh > 0) {
+                    top = Math.max(top, bottom + 2 * _chunksHigh - 1);
+                }
+                int wide = right - left + 1;
+                int high = top - bottom + 1;
+                Chunk[] chunks = new Chunk[wide * high];
+                for (int j = 0; j < _chunksHigh; j++) {
+                    System.arraycopy(_chunks, j * _chunksWide, chunks,
+                            (_chunkBottom + j - bottom) * wide + _chunkLeft - left, _chunksWide);
+                }
+                _chunks = chunks;
+                _chunkLeft = left;
+                _chunkBottom = bottom;
+                _chunksWide = wide;
+                _chunksHigh = high;
+            }
+            _chunks[(cy - _chunkBottom) * _chunksWide + cx - _chunkLeft] = chunk;
+        }
+
+        @Override
+        char getSpace(int xPos, int yPos) {
+            Chunk chunk = chunk(xPos, yPos);
+            return chunk == null ? '\u0000' : (char) chunk._cells[(yPos & (CHUNK - 1)) << CHUNK_BITS
+                    | (xPos & (CHUNK - 1))];
+        }
+
+        @Override
+        boolean isEmpty(int xPos, int yPos) {
+            return getSpace(xPos, yPos) == '\u0000';
+        }
+
+        @Override
+        boolean hasLetter(int xPos, int yPos) {
+            return getSpace(xPos, yPos) != '\u0000';
+        }
+
+        @Override
+        boolean anyLetters(int xPos, int yPos, int dir, int length) {
+            int from = dir == 0 ? xPos : yPos - length + 1;
+            int to = dir == 0 ? xPos + length - 1 : yPos;
+            while (from <= to) {
+                int end = Math.min(to, from | (CHUNK - 1));
+                Chunk chunk = dir == 0 ? chunk(from, yPos) : chunk(xPos, from);
+                if (chunk != null) {
+                    int bits = dir == 0 ? chunk._rowBits[yPos & (CHUNK - 1)] : chunk._colBits[xPos & (CHUNK - 1)];
+                    bits &= -1 << (from & (CHUNK - 1));
+                    bits &= -1 >>> (CHUNK - 1 - (end & (CHUNK - 1)));
+                    if (bits != 0) {
+                        return true;
+                    }
+                }
+                from = end + 1;
+            }
+            return false;
+        }
+
+        @Override
+        long rowBits(int yPos, int chunk) {
+            int start = _left + 64 * chunk;
+            long bits = 0;
+            for (int shift = 0; shift < 64; ) {
+                int x = start + shift;
+                Chunk c = chunk(x, yPos);
+                if (c != null) {
+                    bits |= ((c._rowBits[yPos & (CHUNK - 1)] >>> (x & (CHUNK - 1))) & 0xFFFFFFFFL) << shift;
+                }
+                shift += CHUNK - (x & (CHUNK - 1));
+            }
+            return bits;
+        }
+    }
+
+    /**
+     * A square of CHUNK by CHUNK spaces of a SparseGrid, with the bits of its rows and columns that mark which of
+     * its spaces hold a letter.
+     */
+    private static class Chunk {
+        /** The contents of the spaces, a row at a time from the bottom, with x increasing within a row.*/
+        private final byte[] _cells;
+        /** For each row, from the bottom, and each column, from the left, the bits marking which of its spaces
+         * hold a letter, from the left or from the bottom.*/
+        private final int[] _rowBits, _colBits;
+        /** The owner of the SparseGrid that may write to this chunk.*/
+        private final Object _owner;
+
+        /**
+         * Constructor that creates an empty chunk that the SparseGrid with the given owner may write to.
+         */
+        private Chunk(Object owner) {
+            _cells = new byte[SparseGrid.CHUNK * SparseGrid.CHUNK];
+            _rowBits = new int[SparseGrid.CHUNK];
+            _colBits = new int[SparseGrid.CHUNK];
+            _owner = owner;
+        }
+
+        /**
+         * Constructor that creates a copy of the given chunk that the SparseGrid with the given owner may write to.
+         */
+        private Chunk(Chunk c, Object owner) {
+            _cells = c._cells.clone();
+            _rowBits = c._rowBits.clone();
+            _colBits = c._colBits.clone();
+            _owner = owner;
+        }
+
+        /**
+         * Sets the space at the given position within this chunk to the given char, or empties it if the char
+         * is '\u0000'.
+         */
+        private void set(char c, int col, int row) {
+            _cells[row << SparseGrid.CHUNK_BITS | col] = (byte) c;
+            if (c == '\u0000') {
+                _rowBits[row] &= ~(1 << col);
+                _colBits[col] &= ~(1 << row);
+            } else {
+                _rowBits[row] |= 1 << col;
+                _colBits[col] |= 1 << row;
             }
-            return result;
         }
     }
 
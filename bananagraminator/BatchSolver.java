@@ -0,0 +1,317 @@
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves many racks in one run of the program, so that starting the JVM and loading the dictionary are paid for
+ * once rather than once per rack. Racks are read one per line, either as plain tiles or as JSON objects, and are
+ * solved concurrently on a fixed pool of threads, each rack by its own Player, against the single dictionary that
+ * Utils shares between them. Each result is written as one JSON line as soon as it is finished, so results come
+ * out in the order they finish rather than the order they were read.
+ *
+ * A plain line holds a rack's tiles, with or without spaces between them. A JSON line is an object with a "tiles"
+ * string and optionally an "id", a board "size" of at most MAX_SIZE, which is 0 for a board with no preset size,
+ * a search "depth", a time "budget" in milliseconds for the whole solve, which is 0 for none, a search
+ * "strategy", either "tree" for the game tree or "mcts" for a MonteCarloSearch, and the number of "playouts" the
+ * Monte Carlo search makes for each Move. Blank lines and lines starting with # are skipped. Each output line has
+ * the rack's "id", which is its line number unless it gives one, whether it was solved ("ok"), the time it took
+ * in "millis", either the finished "board", cropped to the spaces in use, or the "error" that stopped it, and the
+ * search's "metrics".
+ *
+ * @author Aryan Agrawal
+ */
+public class BatchSolver {
+
+    /** The board size that sizes each board to its rack, with boardSizeFor.*/
+    public static final int FIT_TO_RACK = -1;
+    /** The most tiles a rack can have and still be fitted with a board of a preset size. Larger racks get a board
+     * with no preset size, since copying and printing a preset board costs time in proportion to its area.*/
+    private static final int MAX_PRESET_TILES = 144;
+    /** The largest board side length a rack can ask for, which is the largest that boardSizeFor gives. A preset
+     * board's memory grows with its area, and a rack that needs more room can ask for a board with no preset size.*/
+    static final int MAX_SIZE = MAX_PRESET_TILES + 1;
+    /** The longest time budget in milliseconds a rack can give, the longest that can be counted in nanoseconds.*/
+    static final long MAX_BUDGET = Long.MAX_VALUE / 1000000;
+
+    /** The number of threads racks are solved on.*/
+    private final int _threads;
+    /** The board side length used for racks that don't give one, BananaBoard.UNBOUNDED for boards with no
+     * preset size, or FIT_TO_RACK to size each board to its rack.*/
+    private final int _defaultSize;
+    /** The search depth used for racks that don't give one.*/
+    private final int _defaultDepth;
+    /** The time budget in milliseconds used for racks that don't give one, or 0 for none.*/
+    private final long _defaultBudget;
+    /** The search strategy used for racks that don't give one, "tree" or "mcts".*/
+    private final String _defaultStrategy;
+    /** The number of playouts per Move used for Monte Carlo searches of racks that don't give one.*/
+    private final int _defaultPlayouts;
+    /** Where results are written.*/
+    private final PrintStream _out;
+    /** The number of racks solved, and the number that couldn't be.*/
+    private final AtomicInteger _solved, _failed;
+
+    /**
+     * Constructor that sets up a BatchSolver with the given settings.
+     * @param threads The number of racks to solve at once.
+     * @param defaultSize The board side length for racks that don't give one, BananaBoard.UNBOUNDED for boards
+     *                    with no preset size, or FIT_TO_RACK to fit each board to its rack.
+     * @param defaultDepth The search depth for racks that don't give one.
+     * @param defaultBudget The time budget in milliseconds for racks that don't give one, or 0 for none.
+     * @param defaultStrategy The search strategy for racks that don't give one, "tree" or "mcts".
+     * @param defaultPlayouts The number of playouts per Move for Monte Carlo searches of racks that don't give one.
+     * @param out Where to write results.
+     */
+    public BatchSolver(int threads, int defaultSize, int defaultDepth, long defaultBudget, String defaultStrategy,
+                       int defaultPlayouts, PrintStream out) {
+        if (threads < 1) {
+            throw new BananaException("A batch needs at least one thread.");
+        }
+        if (defaultSize != FIT_TO_RACK && (defaultSize < 0 || defaultSize > MAX_SIZE)) {
+            throw new BananaException("The board size must be from 0 to " + MAX_SIZE + ".");
+        }
+        if (defaultDepth < 1) {
+            throw new BananaException("The search depth must be at least 1.");
+        }
+        if (defaultBudget < 0 || defaultBudget > MAX_BUDGET) {
+            throw new BananaException("The time budget must be from 0 to " + MAX_BUDGET + " ms.");
+        }
+        checkStrategy(defaultStrategy);
+        if (defaultPlayouts < 1) {
+            throw new BananaException("A Monte Carlo search needs at least one playout per move.");
+        }
+        _threads = threads;
+        _defaultSize = defaultSize;
+        _defaultDepth = defaultDepth;
+        _defaultBudget = defaultBudget;
+        _defaultStrategy = defaultStrategy;
+        _defaultPlayouts = defaultPlayouts;
+        _out = out;
+        _solved = new AtomicInteger();
+        _failed = new AtomicInteger();
+    }
+
+    /**
+     * Throws a BananaException unless the given strategy is one that batch mode knows.
+     */
+    static void checkStrategy(String strategy) {
+        if (!strategy.equals("tree") && !strategy.equals("mcts")) {
+            throw new BananaException("The strategy must be \"tree\" or \"mcts\", not \"" + strategy + "\".");
+        }
+    }
+
+    /**
+     * Runner method for batch mode, called from Main with the arguments after --batch. Reads racks from the
+     * named file, or from standard input if there is none or it is "-", writes results to standard output, and
+     * a summary to standard error.
+     *
+     * Format: java Main --batch [file] [--threads n] [--size n] [--depth n] [--budget ms] [--strategy tree|mcts]
+     * [--playouts n]
+     */
+    public static void main(String[] args) throws IOException {
+        String input = "-";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int size = FIT_TO_RACK;
+        int depth = 1;
+        long budget = 0;
+        String strategy = "tree";
+        int playouts = MonteCarloSearch.DEFAULT_PLAYOUTS;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(option(args, ++i));
+                    break;
+                case "--size":
+                    size = Integer.parseInt(option(args, ++i));
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(option(args, ++i));
+                    break;
+                case "--budget":
+                    budget = Long.parseLong(option(args, ++i));
+                    break;
+                case "--strategy":
+                    strategy = option(args, ++i);
+                    break;
+                case "--playouts":
+                    playouts = Integer.parseInt(option(args, ++i));
+                    break;
+                default:
+                    input = args[i];
+            }
+        }
+        BatchSolver solver = new BatchSolver(threads, size, depth, budget, strategy, playouts, System.out);
+        long start = System.nanoTime();
+        long cpuStart = cpuNanos();
+        try (BufferedReader reader = input.equals("-") ? new BufferedReader(new InputStreamReader(System.in))
+                : new BufferedReader(new FileReader(input))) {
+            solver.run(reader);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double cpuSeconds = (cpuNanos() - cpuStart) / 1e9;
+        int total = solver._solved.get() + solver._failed.get();
+        System.err.printf("Solved %d of %d racks in %.1f s (%.1f racks/s) on %d threads, using %.1f CPU-seconds "
+                + "(%.2f solved per CPU-second).%n", solver._solved.get(), total, seconds, total / seconds, threads,
+                cpuSeconds, solver._solved.get() / cpuSeconds);
+    }
+
+    /**
+     * Returns the CPU time this process has used so far in nanoseconds, or 0 if the platform can't tell.
+     */
+    private static long cpuNanos() {
+        return ProcessHandle.current().info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+    }
+
+    /**
+     * Returns the value of the option at the given index, throwing a BananaException if it is missing.
+     */
+    private static String option(String[] args, int i) {
+        if (i >= args.length) {
+            throw new BananaException("The option " + args[i - 1] + " needs a value.");
+        }
+        return args[i];
+    }
+
+    /**
+     * Solves every rack read from the given reader, writing each result as it finishes, and returns once all
+     * of them are done. At most twice as many racks as there are threads are read ahead of the ones being solved,
+     * so that a long input is never held in memory all at once.
+     */
+    public void run(BufferedReader reader) throws IOException {
+        Utils.isWord("");
+        Utils.getDawg();
+        Utils.allPossibleWords(new Rack());
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        Semaphore inFlight = new Semaphore(2 * _threads);
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                inFlight.acquireUninterruptibly();
+                int number = lineNumber;
+                pool.execute(() -> {
+                    try {
+                        _out.println(solveLine(trimmed, number));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the board size that a rack of the given number of tiles is solved on unless it gives one: the smallest
+     * odd side length of at least 33 that fits the rack, or BananaBoard.UNBOUNDED for racks of more than
+     * MAX_PRESET_TILES tiles.
+     */
+    public static int boardSizeFor(int tiles) {
+        if (tiles > MAX_PRESET_TILES) {
+            return BananaBoard.UNBOUNDED;
+        }
+        return Math.max(33, tiles + 1) | 1;
+    }
+
+    /**
+     * Solves the rack on the given line of input, which was the given line number, and returns its result as
+     * a JSON line. Never throws; a rack that can't be read or solved gives a result with an error.
+     */
+    public String solveLine(String line, int lineNumber) {
+        long start = System.nanoTime();
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("id", String.valueOf(lineNumber));
+        Player player = null;
+        try {
+            String tiles = line;
+            int size = _defaultSize;
+            int depth = _defaultDepth;
+            long budget = _defaultBudget;
+            String strategy = _defaultStrategy;
+            int playouts = _defaultPlayouts;
+            if (line.startsWith("{")) {
+                Map<String, Object> request = Json.parseObject(line);
+                if (request.get("id") != null) {
+                    result.put("id", request.get("id").toString());
+                }
+                if (!(request.get("tiles") instanceof String)) {
+                    throw new BananaException("Each JSON rack needs a \"tiles\" string.");
+                }
+                tiles = (String) request.get("tiles");
+                size = (int) longMember(request, "size", size, 0, MAX_SIZE);
+                depth = (int) longMember(request, "depth", depth, 1, Integer.MAX_VALUE);
+                budget = longMember(request, "budget", budget, 0, MAX_BUDGET);
+                playouts = (int) longMember(request, "playouts", playouts, 1, Integer.MAX_VALUE);
+                if (request.get("strategy") != null) {
+                    strategy = request.get("strategy").toString();
+                    checkStrategy(strategy);
+                }
+            }
+            Rack letters = Rack.of(tiles);
+            if (letters.isEmpty()) {
+                throw new BananaException("The rack has no tiles.");
+            }
+            result.put("tiles", letters.total());
+            if (size == FIT_TO_RACK) {
+                size = boardSizeFor(letters.total());
+            }
+            player = new Player(letters, size);
+            player.setSearchDepth(depth);
+            player.setTimeBudget(0, budget);
+            if (strategy.equals("mcts")) {
+                player.setStrategy(new MonteCarloSearch(1, playouts, 0, MonteCarloSearch.Playout.GREEDY, lineNumber));
+            }
+            BananaBoard board = player.solve();
+            result.put("ok", true);
+            result.put("board", board.rows());
+            _solved.incrementAndGet();
+        } catch (FileNotFoundException | RuntimeException e) {
+            result.put("ok", false);
+            result.put("error", e.getMessage() == null ? e.toString() : e.getMessage());
+            _failed.incrementAndGet();
+        }
+        if (player != null) {
+            result.put("metrics", player.getMetrics().toMap());
+        }
+        result.put("millis", (System.nanoTime() - start) / 1000000);
+        return Json.object(result);
+    }
+
+    /**
+     * Returns the whole number member of the given JSON object with the given name, or the given default if it
+     * is missing. Throws a BananaException if it isn't a whole number from min to max.
+     */
+    private static long longMember(Map<String, Object> request, String name, long otherwise, long min, long max) {
+        Object value = request.get(name);
+        if (value == null) {
+            return otherwise;
+        }
+        if (!(value instanceof Long) || (Long) value < min || (Long) value > max) {
+            throw new BananaException("The \"" + name + "\" of a rack must be a whole number from " + min + " to "
+                    + max + ".");
+        }
+        return (Long) value;
+    }
+}
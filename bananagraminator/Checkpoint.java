@@ -0,0 +1,239 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The binary file format that a Player saves the progress of a solve in, so that a later run can resume it
+ * with Player.resume after the first one is killed. A checkpoint holds the board, as the position and direction
+ * of every word on it, the rack the solve started with and the letters still in hand, the search depth, how
+ * far the iterative search for the next Move had got, and every entry in the transposition table, which is
+ * where nearly all of the work of a long search is kept. Everything else, such as the cached Moves of the
+ * board, is quick to build again.
+ *
+ * A checkpoint file is always whole: it is written to a temporary file next to it first, which is then moved
+ * over it in one step, so a run killed while writing one leaves the last one in place.
+ *
+ * @author Aryan Agrawal
+ */
+public class Checkpoint {
+
+    /** The first four bytes of every checkpoint file, "BNGM".*/
+    private static final int MAGIC = 0x424E474D;
+    /** The version of the format, written after MAGIC, and changed whenever the format is.*/
+    private static final int VERSION = 1;
+
+    /** The board that was saved.*/
+    private final BananaBoard _board;
+    /** The rack the solve started with.*/
+    private final Rack _originalLetters;
+    /** The letters that were still in hand.*/
+    private final Rack _letters;
+    /** The search depth of the Player that was saved.*/
+    private final int _searchDepth;
+    /** How far the iterative search for the next Move had got, or null if it hadn't finished a depth yet.*/
+    private final Player.Frontier _frontier;
+    /** The transposition table that was saved, or null if the Player didn't have one.*/
+    private final TranspositionTable _table;
+
+    /**
+     * Constructor that accepts one argument for each instance variable and assigns them accordingly.
+     */
+    private Checkpoint(BananaBoard board, Rack originalLetters, Rack letters, int searchDepth,
+                       Player.Frontier frontier, TranspositionTable table) {
+        _board = board;
+        _originalLetters = originalLetters;
+        _letters = letters;
+        _searchDepth = searchDepth;
+        _frontier = frontier;
+        _table = table;
+    }
+
+    /**
+     * Returns the position of a solve, without its search state, in the form that write takes: the board, the
+     * rack the solve started with, and the letters still in hand. Taken by the thread solving, between Moves, so
+     * that a checkpoint can later be written from any thread without reading the board while it changes.
+     */
+    static byte[] position(BananaBoard board, Rack originalLetters, Rack letters) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            board.writePlacements(out);
+            writeRack(out, originalLetters);
+            writeRack(out, letters);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new BananaException("Unable to save the board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a checkpoint to the given file, replacing it in one step. The transposition table may be in use by
+     * other threads while it is written.
+     * @param file The file to write.
+     * @param position The board and letters, as returned by position.
+     * @param searchDepth The search depth of the Player.
+     * @param frontier How far the iterative search for the next Move has got, or null.
+     * @param table The transposition table, or null.
+     */
+    static void write(Path file, byte[] position, int searchDepth, Player.Frontier frontier,
+                      TranspositionTable table) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(position.length + 4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(position);
+        out.writeInt(searchDepth);
+        out.writeBoolean(frontier != null);
+        if (frontier != null) {
+            out.writeLong(frontier._state);
+            out.writeInt(frontier._depth);
+            writeMove(out, frontier._best);
+        }
+        out.writeBoolean(table != null);
+        if (table != null) {
+            table.write(out);
+        }
+        out.flush();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads the checkpoint in the given file. Throws a BananaException if it isn't a checkpoint this version of
+     * the program can read, or if it ends too soon or holds text that can't be read.
+     */
+    static Checkpoint read(Path file) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)));
+        if (in.readInt() != MAGIC) {
+            throw new BananaException(file + " is not a checkpoint.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new BananaException(file + " is a version " + version + " checkpoint, but only version "
+                    + VERSION + " can be read.");
+        }
+        try {
+            BananaBoard board = BananaBoard.readPlacements(in);
+            Rack originalLetters = readRack(in);
+            Rack letters = readRack(in);
+            int searchDepth = in.readInt();
+            Player.Frontier frontier = null;
+            if (in.readBoolean()) {
+                long state = in.readLong();
+                int depth = in.readInt();
+                frontier = new Player.Frontier(state, depth, readMove(in));
+            }
+            TranspositionTable table = in.readBoolean() ? TranspositionTable.read(in) : null;
+            return new Checkpoint(board, originalLetters, letters, searchDepth, frontier, table);
+        } catch (EOFException | UTFDataFormatException e) {
+            throw new BananaException("The checkpoint is damaged.");
+        }
+    }
+
+    /**
+     * Writes the given Rack as the number of tiles of each letter.
+     */
+    private static void writeRack(DataOutputStream out, Rack letters) throws IOException {
+        for (int count : letters.toArray()) {
+            out.writeInt(count);
+        }
+    }
+
+    /**
+     * Reads a Rack written by writeRack.
+     */
+    private static Rack readRack(DataInputStream in) throws IOException {
+        Rack letters = new Rack();
+        for (int i = 0; i < 26; i++) {
+            for (int count = in.readInt(); count > 0; count--) {
+                letters.add((char) ('A' + i));
+            }
+        }
+        return letters;
+    }
+
+    /**
+     * Writes the given Move, which may be null.
+     */
+    static void writeMove(DataOutputStream out, Move m) throws IOException {
+        out.writeBoolean(m != null);
+        if (m != null) {
+            out.writeUTF(m.getNewWord());
+            out.writeUTF(m.getAddTo().getWord());
+            out.writeInt(m.getAddTo().getNum());
+            out.writeByte(m.getAddToIndex());
+            out.writeByte(m.getNewIndex());
+            out.writeByte(m.getDir());
+        }
+    }
+
+    /**
+     * Reads a Move written by writeMove, or null if null was written.
+     */
+    static Move readMove(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String newWord = in.readUTF();
+        Word addTo = new Word(in.readUTF(), in.readInt());
+        int addToIndex = in.readByte();
+        int newIndex = in.readByte();
+        return new Move(addTo, addToIndex, newWord, newIndex, in.readByte());
+    }
+
+    /**
+     * Returns the board that was saved.
+     */
+    BananaBoard getBoard() {
+        return _board;
+    }
+
+    /**
+     * Returns the rack the solve started with.
+     */
+    Rack getOriginalLetters() {
+        return _originalLetters;
+    }
+
+    /**
+     * Returns the letters that were still in hand.
+     */
+    Rack getLetters() {
+        return _letters;
+    }
+
+    /**
+     * Returns the search depth of the Player that was saved.
+     */
+    int getSearchDepth() {
+        return _searchDepth;
+    }
+
+    /**
+     * Returns how far the iterative search for the next Move had got, or null if it hadn't finished a depth.
+     */
+    Player.Frontier getFrontier() {
+        return _frontier;
+    }
+
+    /**
+     * Returns the transposition table that was saved, or null if the Player didn't have one.
+     */
+    TranspositionTable getTable() {
+        return _table;
+    }
+}
@@ -0,0 +1,294 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * A directed acyclic word graph (a minimized trie) compiled from a collection of words. Each node is an
+ * int, with its outgoing edges stored contiguously in flat arrays, so walking the graph one letter at a
+ * time never allocates. Used by BananaBoard to generate moves by walking outward from an anchor letter
+ * while only ever following prefixes of real words.
+ *
+ * @author Aryan Agrawal
+ */
+public class Dawg {
+
+    /** For each node, the index of its first edge in _edgeLabels and _edgeTargets. The edges of node n
+     * run from _edgeStart[n] up to, but not including, _edgeStart[n + 1].*/
+    private int[] _edgeStart;
+    /** The letter on each edge, sorted within each node.*/
+    private char[] _edgeLabels;
+    /** The node that each edge leads to.*/
+    private int[] _edgeTargets;
+    /** Whether a word ends at each node.*/
+    private boolean[] _terminal;
+    /** The node that represents the empty prefix.*/
+    private int _root;
+    /** For each node and letter, at index node * 26 + letter, a bitmask with bit k set if some path out of
+     * the node follows k edges not labeled with that letter and then an edge that is.*/
+    private int[] _letterDistances;
+
+    /** The number of nodes and edges in this DAWG.*/
+    private int _numNodes, _numEdges;
+
+    /**
+     * Constructor that compiles the given collection of words into a DAWG. Words containing anything
+     * other than the uppercase letters A through Z are left out.
+     * @param words The words to compile.
+     */
+    public Dawg(Collection<String> words) {
+        ArrayList<String> valid = new ArrayList<>();
+        for (String w : words) {
+            if (isUppercaseWord(w)) {
+                valid.add(w);
+            }
+        }
+        String[] sorted = valid.toArray(new String[0]);
+        Arrays.sort(sorted);
+        _edgeStart = new int[1024];
+        _edgeLabels = new char[1024];
+        _edgeTargets = new int[1024];
+        _terminal = new boolean[1024];
+        HashMap<String, Integer> register = new HashMap<>();
+        _root = build(sorted, 0, sorted.length, 0, register);
+        _edgeStart[_numNodes] = _numEdges;
+        _edgeStart = Arrays.copyOf(_edgeStart, _numNodes + 1);
+        _edgeLabels = Arrays.copyOf(_edgeLabels, _numEdges);
+        _edgeTargets = Arrays.copyOf(_edgeTargets, _numEdges);
+        _terminal = Arrays.copyOf(_terminal, _numNodes);
+        initializeLetterDistances();
+    }
+
+    /**
+     * Constructor used by readFrom, which fills in the arrays itself.
+     */
+    private Dawg() {
+    }
+
+    /**
+     * Writes this DAWG to the given stream, in the format read back by readFrom. Only the nodes and edges are
+     * written; the letter distances are quick to work out again from them.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(_numNodes);
+        out.writeInt(_numEdges);
+        out.writeInt(_root);
+        for (int i = 0; i <= _numNodes; i++) {
+            out.writeInt(_edgeStart[i]);
+        }
+        for (int e = 0; e < _numEdges; e++) {
+            out.writeInt(_edgeTargets[e]);
+        }
+        for (int e = 0; e < _numEdges; e++) {
+            out.writeByte(_edgeLabels[e]);
+        }
+        for (int node = 0; node < _numNodes; node++) {
+            out.writeBoolean(_terminal[node]);
+        }
+    }
+
+    /**
+     * Reads a DAWG written by writeTo from the given buffer, starting at its current position, and leaves the
+     * position just past it. Copying the arrays out of the buffer takes a few milliseconds, where compiling the
+     * DAWG from the word list takes seconds.
+     */
+    public static Dawg readFrom(ByteBuffer buf) {
+        Dawg d = new Dawg();
+        d._numNodes = buf.getInt();
+        d._numEdges = buf.getInt();
+        d._root = buf.getInt();
+        d._edgeStart = new int[d._numNodes + 1];
+        buf.asIntBuffer().get(d._edgeStart);
+        buf.position(buf.position() + 4 * d._edgeStart.length);
+        d._edgeTargets = new int[d._numEdges];
+        buf.asIntBuffer().get(d._edgeTargets);
+        buf.position(buf.position() + 4 * d._edgeTargets.length);
+        d._edgeLabels = new char[d._numEdges];
+        for (int e = 0; e < d._numEdges; e++) {
+            d._edgeLabels[e] = (char) buf.get();
+        }
+        d._terminal = new boolean[d._numNodes];
+        for (int node = 0; node < d._numNodes; node++) {
+            d._terminal[node] = buf.get() != 0;
+        }
+        d.initializeLetterDistances();
+        return d;
+    }
+
+    /**
+     * Helper method for the constructor that fills in _letterDistances. Every edge leads to a node built
+     * before the node it leaves, so filling nodes in order of id sees every child before its parents.
+     */
+    private void initializeLetterDistances() {
+        _letterDistances = new int[_numNodes * 26];
+        for (int node = 0; node < _numNodes; node++) {
+            for (int e = _edgeStart[node]; e < _edgeStart[node + 1]; e++) {
+                int label = _edgeLabels[e] - 'A';
+                int child = _edgeTargets[e] * 26;
+                for (int letter = 0; letter < 26; letter++) {
+                    if (letter == label) {
+                        _letterDistances[node * 26 + letter] |= 1;
+                    } else {
+                        _letterDistances[node * 26 + letter] |= _letterDistances[child + letter] << 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method for the constructor. Builds the node for the prefix shared by all the words in
+     * sorted[lo, hi), which is depth characters long, and returns its id. Children are built first, and
+     * a node identical to one already built is reused rather than created again.
+     * @param sorted The sorted array of words.
+     * @param lo The index of the first word with this prefix.
+     * @param hi One past the index of the last word with this prefix.
+     * @param depth The length of the shared prefix.
+     * @param register Map from node signatures to the ids of nodes already built.
+     */
+    private int build(String[] sorted, int lo, int hi, int depth, HashMap<String, Integer> register) {
+        boolean terminal = lo < hi && sorted[lo].length() == depth;
+        int start = terminal ? lo + 1 : lo;
+        StringBuilder signature = new StringBuilder(terminal ? "1" : "0");
+        ArrayList<int[]> children = new ArrayList<>();
+        while (start < hi) {
+            char c = sorted[start].charAt(depth);
+            int end = start;
+            while (end < hi && sorted[end].charAt(depth) == c) {
+                end++;
+            }
+            int child = build(sorted, start, end, depth + 1, register);
+            children.add(new int[] {c, child});
+            signature.append(c).append(child);
+            start = end;
+        }
+        String key = signature.toString();
+        Integer existing = register.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int node = _numNodes++;
+        if (node + 1 >= _edgeStart.length) {
+            _edgeStart = Arrays.copyOf(_edgeStart, _edgeStart.length * 2);
+            _terminal = Arrays.copyOf(_terminal, _terminal.length * 2);
+        }
+        _edgeStart[node] = _numEdges;
+        _terminal[node] = terminal;
+        for (int[] edge : children) {
+            if (_numEdges == _edgeLabels.length) {
+                _edgeLabels = Arrays.copyOf(_edgeLabels, _edgeLabels.length * 2);
+                _edgeTargets = Arrays.copyOf(_edgeTargets, _edgeTargets.length * 2);
+            }
+            _edgeLabels[_numEdges] = (char) edge[0];
+            _edgeTargets[_numEdges] = edge[1];
+            _numEdges++;
+        }
+        register.put(key, node);
+        return node;
+    }
+
+    /**
+     * Returns the node that represents the empty prefix.
+     */
+    public int root() {
+        return _root;
+    }
+
+    /**
+     * Returns the node reached by following the edge labeled c out of the given node, or -1 if there
+     * is no such edge.
+     */
+    public int child(int node, char c) {
+        for (int e = _edgeStart[node]; e < _edgeStart[node + 1]; e++) {
+            if (_edgeLabels[e] == c) {
+                return _edgeTargets[e];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first edge out of the given node. Used along with edgeEnd, edgeLabel and
+     * edgeTarget to loop through every edge of a node.
+     */
+    public int edgeStart(int node) {
+        return _edgeStart[node];
+    }
+
+    /**
+     * Returns one past the index of the last edge out of the given node.
+     */
+    public int edgeEnd(int node) {
+        return _edgeStart[node + 1];
+    }
+
+    /**
+     * Returns the letter on the given edge.
+     */
+    public char edgeLabel(int edge) {
+        return _edgeLabels[edge];
+    }
+
+    /**
+     * Returns the node that the given edge leads to.
+     */
+    public int edgeTarget(int edge) {
+        return _edgeTargets[edge];
+    }
+
+    /**
+     * Returns whether a word ends at the given node.
+     */
+    public boolean isTerminal(int node) {
+        return _terminal[node];
+    }
+
+    /**
+     * Returns whether some path out of the given node follows exactly `steps` edges not labeled c, and then
+     * an edge labeled c. Used to abandon a partial word early when it can no longer reach a required letter
+     * at the required position.
+     */
+    public boolean reachesLetter(int node, char c, int steps) {
+        return (_letterDistances[node * 26 + c - 'A'] & (1 << steps)) != 0;
+    }
+
+    /**
+     * Returns whether some path out of the given node follows an edge labeled c, however far along.
+     */
+    public boolean reachesLetter(int node, char c) {
+        return _letterDistances[node * 26 + c - 'A'] != 0;
+    }
+
+    /**
+     * Returns whether the given sequence of characters is a word in this DAWG.
+     */
+    public boolean contains(CharSequence s) {
+        int node = _root;
+        for (int i = 0; i < s.length() && node != -1; i++) {
+            node = child(node, s.charAt(i));
+        }
+        return node != -1 && _terminal[node];
+    }
+
+    /**
+     * Returns the number of nodes in this DAWG.
+     */
+    public int size() {
+        return _numNodes;
+    }
+
+    /**
+     * Returns whether the given word is made up only of the uppercase letters A through Z.
+     */
+    private static boolean isUppercaseWord(String w) {
+        for (int i = 0; i < w.length(); i++) {
+            if (w.charAt(i) < 'A' || w.charAt(i) > 'Z') {
+                return false;
+            }
+        }
+        return !w.isEmpty();
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+
+/**
+ * A read-only view of a dictionary snapshot, the binary file written by DictionaryCompiler. The snapshot holds
+ * every valid word, shortest first and then alphabetically like the text word list, along with its
+ * letter-presence bitmask and word score, indexed by word id, the WordPostings index used to answer anagram
+ * queries, and the compiled Dawg of all the words. The file is memory-mapped, so the words themselves are never
+ * turned into Strings unless asked for, and loading takes milliseconds instead of the seconds spent reading and
+ * compiling the text word list.
+ *
+ * The layout, all big-endian, is: the magic number and version, the number of words n and the number of bytes
+ * of letters, n + 1 ints giving the offset of each word in the letters, the letters themselves, n masks, n
+ * scores, the WordPostings as written by WordPostings.writeTo, and finally the Dawg as written by Dawg.writeTo.
+ *
+ * @author Aryan Agrawal
+ */
+public class Dictionary {
+
+    /** The first four bytes of every snapshot, "BNDG".*/
+    public static final int MAGIC = 0x424E4447;
+    /** The version of the layout described above.*/
+    public static final int VERSION = 2;
+    /** The system property naming the snapshot file to load, if set.*/
+    public static final String PATH_PROPERTY = "bananagraminator.dictionary";
+    /** The name of the snapshot looked for on the classpath if PATH_PROPERTY isn't set.*/
+    public static final String RESOURCE_NAME = "good-words.dict";
+
+    /** The number of words in this Dictionary.*/
+    private final int _size;
+    /** The offset of each word in _letters, with one extra entry marking the end of the last word.*/
+    private final ByteBuffer _offsets;
+    /** The letters of every word, one byte each, one word after another in id order.*/
+    private final ByteBuffer _letters;
+    /** The letter-presence bitmask of each word, bit 0 for A up to bit 25 for Z.*/
+    private final ByteBuffer _masks;
+    /** The score of each word, as given by Utils.wordScore when the snapshot was compiled.*/
+    private final ByteBuffer _scores;
+    /** The anagram index over every word, by id, copied out of the snapshot.*/
+    private final WordPostings _postings;
+    /** The Dawg of every word, copied out of the snapshot.*/
+    private final Dawg _dawg;
+
+    /**
+     * Constructor that reads a Dictionary from the given snapshot contents. The sections of the buffer are
+     * used in place rather than copied, except for the WordPostings and the Dawg. Throws a BananaException if the buffer doesn't
+     * hold a snapshot this version can read.
+     */
+    private Dictionary(ByteBuffer buf) {
+        if (buf.remaining() < 16 || buf.getInt() != MAGIC) {
+            throw new BananaException("The dictionary snapshot is not a snapshot.");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new BananaException("The dictionary snapshot is version " + version + ", but only version "
+                    + VERSION + " can be read. Run DictionaryCompiler again.");
+        }
+        _size = buf.getInt();
+        int numLetters = buf.getInt();
+        _offsets = section(buf, 4 * (_size + 1));
+        _letters = section(buf, numLetters);
+        _masks = section(buf, 4 * _size);
+        _scores = section(buf, 4 * _size);
+        _postings = WordPostings.readFrom(buf, this);
+        _dawg = Dawg.readFrom(buf);
+    }
+
+    /**
+     * Returns the next length bytes of the given buffer as a buffer of their own, and moves past them.
+     */
+    private static ByteBuffer section(ByteBuffer buf, int length) {
+        ByteBuffer result = buf.slice();
+        result.limit(length);
+        buf.position(buf.position() + length);
+        return result;
+    }
+
+    /**
+     * Loads the configured dictionary snapshot: the file named by the PATH_PROPERTY system property if it is set,
+     * and otherwise RESOURCE_NAME on the classpath. Returns null if the property isn't set and there is no such
+     * resource, in which case the text word list should be used instead.
+     */
+    public static Dictionary load() throws IOException {
+        String path = System.getProperty(PATH_PROPERTY);
+        if (path != null) {
+            return map(Paths.get(path));
+        }
+        URL resource = Dictionary.class.getResource("/" + RESOURCE_NAME);
+        if (resource == null) {
+            return null;
+        }
+        if (resource.getProtocol().equals("file")) {
+            try {
+                return map(Paths.get(resource.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException("Couldn't find the file for " + resource + ".", e);
+            }
+        }
+        try (InputStream in = resource.openStream()) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Memory-maps the snapshot at the given path and returns the Dictionary it holds. The mapping stays valid
+     * after the file is closed.
+     */
+    public static Dictionary map(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            throw new FileNotFoundException(path + " (No such dictionary snapshot)");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Dictionary(buf);
+        }
+    }
+
+    /**
+     * Reads a snapshot from the given stream and returns the Dictionary it holds. Used when the snapshot is
+     * packed inside a jar, where it can't be mapped.
+     */
+    public static Dictionary read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1 << 16];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            bytes.write(chunk, 0, n);
+        }
+        return new Dictionary(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Returns the number of words in this Dictionary.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Returns the word with the given id. Ids run from 0 to size() - 1, shortest words first and alphabetically
+     * among words of the same length.
+     */
+    public String word(int id) {
+        int start = _offsets.getInt(4 * id);
+        int end = _offsets.getInt(4 * id + 4);
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) _letters.get(start + i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the letter-presence bitmask of the word with the given id.
+     */
+    public int mask(int id) {
+        return _masks.getInt(4 * id);
+    }
+
+    /**
+     * Returns the score of the word with the given id.
+     */
+    public int score(int id) {
+        return _scores.getInt(4 * id);
+    }
+
+    /**
+     * Returns the id of the given word, or -1 if it isn't in this Dictionary. Searches the sorted words
+     * in place, without creating any Strings.
+     */
+    public int indexOf(CharSequence s) {
+        int lo = 0;
+        int hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, s);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method for indexOf that compares the word with the given id to the given sequence of characters,
+     * by length first and then alphabetically, the order of the ids.
+     */
+    private int compare(int id, CharSequence s) {
+        int start = _offsets.getInt(4 * id);
+        int length = _offsets.getInt(4 * id + 4) - start;
+        if (length != s.length()) {
+            return length - s.length();
+        }
+        for (int i = 0; i < length; i++) {
+            int diff = (char) _letters.get(start + i) - s.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns whether the given sequence of characters is a word in this Dictionary.
+     */
+    public boolean contains(CharSequence s) {
+        return _dawg.contains(s);
+    }
+
+    /**
+     * Returns the anagram index over every word in this Dictionary, which only makes Strings of the words that a
+     * query returns.
+     */
+    public WordPostings getPostings() {
+        return _postings;
+    }
+
+    /**
+     * Returns the Dawg of every word in this Dictionary.
+     */
+    public Dawg getDawg() {
+        return _dawg;
+    }
+
+    /**
+     * Returns a new Set holding every word in this Dictionary as a String, for the code that still needs one.
+     * The words are added in id order, the same order the text word list adds them in, so the Set iterates
+     * in the same order as one read from the text list.
+     */
+    public HashSet<String> toWordSet() {
+        HashSet<String> words = new HashSet<>();
+        for (int id = 0; id < _size; id++) {
+            words.add(word(id));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+/**
+ * Build step that compiles a text word list into a dictionary snapshot that Dictionary can memory-map, so the
+ * program doesn't have to read and compile the word list every time it starts. Run it again whenever the word
+ * list or the letter scores change.
+ *
+ * Format: java DictionaryCompiler [word list] [snapshot], which defaults to reading good-words.txt and writing
+ * good-words.dict. Put the snapshot on the classpath, or point the bananagraminator.dictionary system property
+ * at it, to have Utils load it.
+ *
+ * @author Aryan Agrawal
+ */
+public class DictionaryCompiler {
+
+    /**
+     * Runner method that compiles the word list named by args[0] into the snapshot named by args[1].
+     */
+    public static void main(String[] args) throws IOException {
+        String input = args.length > 0 ? args[0] : "good-words.txt";
+        String output = args.length > 1 ? args[1] : Dictionary.RESOURCE_NAME;
+        long start = System.nanoTime();
+        ArrayList<String> words = readWords(new File(input));
+        Path target = Paths.get(output);
+        Path temp = Paths.get(output + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+            write(words, out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Compiled " + words.size() + " words from " + input + " into " + output + " ("
+                + Files.size(target) + " bytes) in " + (System.nanoTime() - start) / 1000000 + " ms.");
+    }
+
+    /**
+     * Returns the words in the given word list, shortest first and then alphabetically, leaving out duplicates
+     * and anything that isn't made up only of the uppercase letters A through Z.
+     */
+    private static ArrayList<String> readWords(File wordFile) throws FileNotFoundException {
+        ArrayList<String> words = new ArrayList<>();
+        Scanner wordScan = new Scanner(wordFile);
+        while (wordScan.hasNextLine()) {
+            String word = wordScan.nextLine();
+            if (letterMask(word) != -1) {
+                words.add(word);
+            }
+        }
+        wordScan.close();
+        words.sort((s1, s2) -> s1.length() != s2.length() ? s1.length() - s2.length() : s1.compareTo(s2));
+        ArrayList<String> unique = new ArrayList<>();
+        for (String w : words) {
+            if (unique.isEmpty() || !unique.get(unique.size() - 1).equals(w)) {
+                unique.add(w);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Writes the given words, already in id order, to the given stream in the layout described in Dictionary.
+     */
+    private static void write(ArrayList<String> words, DataOutputStream out) throws IOException {
+        out.writeInt(Dictionary.MAGIC);
+        out.writeInt(Dictionary.VERSION);
+        out.writeInt(words.size());
+        int numLetters = 0;
+        for (String w : words) {
+            numLetters += w.length();
+        }
+        out.writeInt(numLetters);
+        int offset = 0;
+        for (String w : words) {
+            out.writeInt(offset);
+            offset += w.length();
+        }
+        out.writeInt(offset);
+        for (String w : words) {
+            out.writeBytes(w);
+        }
+        for (String w : words) {
+            out.writeInt(letterMask(w));
+        }
+        for (String w : words) {
+            out.writeInt(Utils.wordScore(w));
+        }
+        new WordPostings(words).writeTo(out);
+        new Dawg(words).writeTo(out);
+    }
+
+    /**
+     * Returns the letter-presence bitmask of the given word, or -1 if it is empty or contains anything other
+     * than the uppercase letters A through Z.
+     */
+    private static int letterMask(String w) {
+        if (w.isEmpty()) {
+            return -1;
+        }
+        int mask = 0;
+        for (int i = 0; i < w.length(); i++) {
+            char c = w.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return -1;
+            }
+            mask |= 1 << (c - 'A');
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the program's line-oriented input and output: reading one flat object per line, whose
+ * values are strings, numbers, booleans or null, and writing objects whose values are those, lists or objects.
+ * Nested objects and arrays aren't accepted on input, since no input needs them.
+ *
+ * @author Aryan Agrawal
+ */
+public class Json {
+
+    /** The text being parsed.*/
+    private final String _text;
+    /** The index of the next character of _text to parse.*/
+    private int _pos;
+
+    /**
+     * Constructor used by parseObject, which holds the text while it is parsed.
+     */
+    private Json(String text) {
+        _text = text;
+    }
+
+    /**
+     * Parses the given text as a flat JSON object and returns its members in order. Strings become Strings,
+     * numbers become Longs or Doubles, true and false become Booleans and null becomes null. Throws a
+     * BananaException if the text isn't such an object.
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Json parser = new Json(text);
+        Map<String, Object> result = parser.object();
+        parser.skipSpace();
+        if (parser._pos != text.length()) {
+            throw parser.error("Unexpected text after the object");
+        }
+        return result;
+    }
+
+    /**
+     * Helper method for parseObject that parses an object starting at the current position.
+     */
+    private Map<String, Object> object() {
+        LinkedHashMap<String, Object> members = new LinkedHashMap<>();
+        expect('{');
+        skipSpace();
+        if (peek() == '}') {
+            _pos++;
+            return members;
+        }
+        while (true) {
+            skipSpace();
+            String key = string();
+            skipSpace();
+            expect(':');
+            skipSpace();
+            members.put(key, value());
+            skipSpace();
+            char c = next();
+            if (c == '}') {
+                return members;
+            } else if (c != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    /**
+     * Helper method for object that parses a single value starting at the current position.
+     */
+    private Object value() {
+        char c = peek();
+        if (c == '"') {
+            return string();
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            return number();
+        } else if (_text.startsWith("true", _pos)) {
+            _pos += 4;
+            return Boolean.TRUE;
+        } else if (_text.startsWith("false", _pos)) {
+            _pos += 5;
+            return Boolean.FALSE;
+        } else if (_text.startsWith("null", _pos)) {
+            _pos += 4;
+            return null;
+        }
+        throw error("Expected a string, number, boolean or null");
+    }
+
+    /**
+     * Helper method for value that parses a number starting at the current position.
+     */
+    private Object number() {
+        int start = _pos;
+        while (_pos < _text.length() && "+-0123456789.eE".indexOf(_text.charAt(_pos)) != -1) {
+            _pos++;
+        }
+        String digits = _text.substring(start, _pos);
+        try {
+            if (digits.indexOf('.') == -1 && digits.indexOf('e') == -1 && digits.indexOf('E') == -1) {
+                return Long.parseLong(digits);
+            }
+            return Double.parseDouble(digits);
+        } catch (NumberFormatException e) {
+            throw error("Malformed number " + digits);
+        }
+    }
+
+    /**
+     * Helper method that parses a string, including its quotes, starting at the current position.
+     */
+    private String string() {
+        expect('"');
+        StringBuilder result = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return result.toString();
+            } else if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            char escaped = next();
+            switch (escaped) {
+                case 'b':
+                    result.append('\b');
+                    break;
+                case 'f':
+                    result.append('\f');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                case 'u':
+                    if (_pos + 4 > _text.length()) {
+                        throw error("Malformed escape");
+                    }
+                    try {
+                        result.append((char) Integer.parseInt(_text.substring(_pos, _pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Malformed escape");
+                    }
+                    _pos += 4;
+                    break;
+                default:
+                    result.append(escaped);
+            }
+        }
+    }
+
+    /**
+     * Moves past any whitespace at the current position.
+     */
+    private void skipSpace() {
+        while (_pos < _text.length() && Character.isWhitespace(_text.charAt(_pos))) {
+            _pos++;
+        }
+    }
+
+    /**
+     * Returns the character at the current position without moving past it.
+     */
+    private char peek() {
+        if (_pos >= _text.length()) {
+            throw error("Unexpected end of text");
+        }
+        return _text.charAt(_pos);
+    }
+
+    /**
+     * Returns the character at the current position and moves past it.
+     */
+    private char next() {
+        char c = peek();
+        _pos++;
+        return c;
+    }
+
+    /**
+     * Moves past the given character, throwing a BananaException if it isn't the one at the current position.
+     */
+    private void expect(char c) {
+        if (next() != c) {
+            _pos--;
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    /**
+     * Returns a BananaException describing a problem at the current position.
+     */
+    private BananaException error(String message) {
+        return new BananaException(message + " at character " + _pos + " of the JSON input.");
+    }
+
+    /**
+     * Returns a JSON object with the given members, in order. Values may be Strings, Numbers, Booleans, null, or
+     * Lists or Maps of those.
+     */
+    public static String object(Map<String, ?> members) {
+        StringBuilder result = new StringBuilder("{");
+        for (Map.Entry<String, ?> member : members.entrySet()) {
+            if (result.length() > 1) {
+                result.append(',');
+            }
+            quote(member.getKey(), result);
+            result.append(':');
+            appendValue(member.getValue(), result);
+        }
+        return result.append('}').toString();
+    }
+
+    /**
+     * Helper method for object that appends the given value to the given StringBuilder.
+     */
+    @SuppressWarnings("unchecked")
+    private static void appendValue(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            out.append(object((Map<String, ?>) value));
+        } else if (value instanceof List) {
+            out.append('[');
+            boolean first = true;
+            for (Object element : (List<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                appendValue(element, out);
+                first = false;
+            }
+            out.append(']');
+        } else {
+            quote(value.toString(), out);
+        }
+    }
+
+    /**
+     * Appends the given String to the given StringBuilder as a quoted JSON string.
+     */
+    public static void quote(String s, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -1,6 +1,8 @@
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Scanner;
-import java.util.HashMap;
 
 /**
  * Main class for the Bananagraminator, an AI that creates a valid crossword given a set of letters.
@@ -9,27 +11,45 @@ import java.util.HashMap;
  */
 public class Main {
 
+    /** The time, in milliseconds, between checkpoints of a solve given a checkpoint file.*/
+    private static final long CHECKPOINT_INTERVAL = 5000;
+
     /**
      * Main, runner method for the program. Supply with program arguments of args[0] as
-     * the desired side length of the board, and args[1] as a String containing each of
-     * the individual letters desired in the result, with only spaces separating them.
+     * the desired side length of the board, or 0 for a board with no preset size, and args[1] as a String
+     * containing each of the individual letters desired in the result, with only spaces separating them.
+     * An optional args[2] names a file to checkpoint the solve to, and with args[0] as --resume and args[1] as
+     * that file, a killed solve carries on from its last checkpoint. With args[0] as --batch, solves many racks
+     * at once instead; see BatchSolver. With args[0] as --serve, solves racks sent over HTTP; see SolveServer.
      */
-    public static void main(String[] args) throws FileNotFoundException {
-        if (args.length != 0) {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 0 && args[0].equals("--batch")) {
+            BatchSolver.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length != 0 && args[0].equals("--serve")) {
+            SolveServer.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length != 0 && args[0].equals("--resume")) {
+            if (args.length < 2) {
+                System.err.println("Name the checkpoint file to resume from. Format: java Main --resume [checkpoint file]");
+                System.exit(1);
+            }
+            Path checkpoint = Paths.get(args[1]);
+            Player AI = Player.resume(checkpoint);
+            AI.setCheckpoint(checkpoint, CHECKPOINT_INTERVAL);
+            System.out.println();
+            AI.createBananagrams();
+        } else if (args.length != 0) {
             int boardDim = Integer.parseInt(args[0]);
             String tiles = args[1];
-            HashMap<String, Integer> letters = new HashMap<>();
-            Scanner line = new Scanner(tiles);
-            while (line.hasNext()) {
-                String letter = line.next().toUpperCase();
-                letters.put(letter, letters.getOrDefault(letter, 0) + 1);
-            }
+            Rack letters = parseTiles(tiles);
             Player AI;
-            if (boardDim > 11) {
+            if (boardDim > 11 || boardDim == BananaBoard.UNBOUNDED) {
                 AI = new Player(letters, boardDim);
             } else {
                 AI = new Player(letters);
             }
+            if (args.length > 2) {
+                AI.setCheckpoint(Paths.get(args[2]), CHECKPOINT_INTERVAL);
+            }
             System.out.println();
             AI.createBananagrams();
         } else {
@@ -37,21 +57,16 @@ public class Main {
             System.out.println("Hello! Initial Set Up:");
             System.out.print("Do you wish to set a custom board dimension? (y/n): ");
             String decision = kb.nextLine();
-            int sideLen = 0;
+            int sideLen = -1;
             if (decision.trim().equalsIgnoreCase("y")) {
-                System.out.print("Board side length: ");
+                System.out.print("Board side length (0 for no preset size): ");
                 sideLen = Integer.parseInt(kb.nextLine());
             }
-            HashMap<String, Integer> letters = new HashMap<>();
             System.out.print("Enter all tiles, separated only by spaces: ");
             String tiles = kb.nextLine();
-            Scanner line = new Scanner(tiles);
-            while (line.hasNext()) {
-                String letter = line.next().toUpperCase();
-                letters.put(letter, letters.getOrDefault(letter, 0) + 1);
-            }
+            Rack letters = parseTiles(tiles);
             Player AI;
-            if (sideLen != 0) {
+            if (sideLen != -1) {
                 AI = new Player(letters, sideLen);
             } else {
                 AI = new Player(letters);
@@ -60,4 +75,21 @@ public class Main {
             AI.createBananagrams();
         }
     }
+
+    /**
+     * Given a String containing individual letters separated only by spaces, returns a Rack
+     * holding those letters. Throws a BananaException if any of them isn't a single letter.
+     */
+    private static Rack parseTiles(String tiles) {
+        Rack letters = new Rack();
+        Scanner line = new Scanner(tiles);
+        while (line.hasNext()) {
+            String letter = line.next().toUpperCase();
+            if (letter.length() != 1) {
+                throw new BananaException("Tiles must be single letters, separated only by spaces.");
+            }
+            letters.add(letter.charAt(0));
+        }
+        return letters;
+    }
 }
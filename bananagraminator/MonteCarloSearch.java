@@ -0,0 +1,431 @@
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A SearchStrategy that chooses Moves by Monte Carlo Tree Search with the UCT rule, instead of Player's
+ * exhaustive game tree and hand-tuned heuristic. Each playout walks down a tree of the Moves tried so far,
+ * picking at each node the child with the best balance of average reward and how little it has been tried,
+ * then plays out the rest of the game from the first untried Move it reaches, with random or greedy Moves
+ * from BananaBoard.legalMovesDawg, until the hand is empty or no Move is left. A playout that empties the
+ * hand scores 1, and one that gets stuck scores up to one half, by the fraction of the tiles it played.
+ *
+ * Playouts run on several worker threads at once, each with its own copy of the board and letters, all
+ * sharing one tree. A worker walking down the tree adds a virtual loss to each node it passes through until its
+ * playout is scored, so the other workers spread out over other branches rather than all following it. The
+ * search stops after a set number of playouts, a set time, or as soon as any playout wins. Without a win, the
+ * Move chosen is the child of the root that was tried most.
+ *
+ * A winning playout is a whole sequence of Moves that empties the hand, so it is kept, and the next calls to
+ * chooseMove play the rest of it without searching again, as long as they are asked about the states it leads
+ * to. A MonteCarloSearch can be reused from one solve to the next, but not shared by Players solving at once.
+ *
+ * @author Aryan Agrawal
+ */
+public class MonteCarloSearch implements SearchStrategy {
+
+    /** How the Moves of a playout are picked once it leaves the tree.*/
+    public enum Playout {
+        /** Uniformly at random from every legal Move.*/
+        RANDOM,
+        /** The Move that plays the most tiles, breaking ties at random.*/
+        GREEDY
+    }
+
+    /** The number of playouts each search makes unless the constructor is given another.*/
+    public static final int DEFAULT_PLAYOUTS = 200;
+    /** The weight given to trying Moves that haven't been tried much, against those that have scored well.*/
+    private static final double EXPLORATION = 0.7;
+    /** The most that a playout which doesn't empty the hand can score.*/
+    private static final double STUCK_REWARD = 0.5;
+
+    /** The number of worker threads that make playouts.*/
+    private final int _threads;
+    /** The number of playouts each search makes, or 0 for no limit.*/
+    private final int _playouts;
+    /** The milliseconds each search may take, or 0 for no limit.*/
+    private final long _timeBudget;
+    /** How playouts pick their Moves.*/
+    private final Playout _policy;
+    /** The seed of the random numbers used by the first worker. Each other worker adds its index to it.*/
+    private final long _seed;
+    /** The pool that the workers run in, created the first time a search needs more than one.*/
+    private ForkJoinPool _pool;
+    /** The Moves left to make from a winning playout found by an earlier search, or null if there are none.*/
+    private List<Move> _plan;
+    /** The hash of the board and letters that the next Move of _plan is to be made from.*/
+    private long _planState;
+
+    /**
+     * Constructor that sets up a search with one worker, making DEFAULT_PLAYOUTS greedy playouts.
+     */
+    public MonteCarloSearch() {
+        this(1, DEFAULT_PLAYOUTS, 0, Playout.GREEDY, 0);
+    }
+
+    /**
+     * Constructor that sets up a search with the given settings. At least one of the playout and time limits
+     * must be set.
+     * @param threads The number of worker threads to make playouts with.
+     * @param playouts The number of playouts to make for each Move, or 0 for no limit.
+     * @param timeBudget The milliseconds to search for each Move, or 0 for no limit.
+     * @param policy How playouts pick their Moves.
+     * @param seed The seed of the random numbers used by playouts.
+     */
+    public MonteCarloSearch(int threads, int playouts, long timeBudget, Playout policy, long seed) {
+        if (threads < 1) {
+            throw new BananaException("A search needs at least one thread.");
+        }
+        if (playouts < 0 || timeBudget < 0) {
+            throw new BananaException("A playout or time limit can't be negative.");
+        }
+        if (playouts == 0 && timeBudget == 0) {
+            throw new BananaException("A Monte Carlo search needs a playout limit, a time limit, or both.");
+        }
+        _threads = threads;
+        _playouts = playouts;
+        _timeBudget = timeBudget;
+        _policy = policy;
+        _seed = seed;
+    }
+
+    @Override
+    public Move chooseMove(BananaBoard board, Rack letters, BooleanSupplier stopped) throws FileNotFoundException {
+        Move planned = followPlan(board, letters);
+        if (planned != null) {
+            return planned;
+        }
+        Search search = new Search(board, letters, stopped);
+        if (_threads == 1) {
+            search.work(board, new Rack(letters), new Random(_seed));
+        } else {
+            if (_pool == null) {
+                _pool = new ForkJoinPool(_threads);
+            }
+            ArrayList<ForkJoinTask<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < _threads; i++) {
+                BananaBoard copy = i == 0 ? board : new BananaBoard(board);
+                Random random = new Random(_seed + i);
+                workers.add(ForkJoinTask.adapt(() -> {
+                    search.work(copy, new Rack(letters), random);
+                    return null;
+                }));
+            }
+            _pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(workers)));
+        }
+        List<Move> win = search._win.get();
+        if (win != null) {
+            _plan = new ArrayList<>(win);
+            _planState = board.zobristHash() ^ letters.zobristHash();
+            return followPlan(board, letters);
+        }
+        return search._root.mostTried();
+    }
+
+    /**
+     * Shuts down the worker threads of this search, if it has started any. A later search starts new ones, so
+     * this can be called whenever the search is done for a while, and should be called once it is done for good.
+     */
+    public void shutdown() {
+        if (_pool != null) {
+            _pool.shutdown();
+            _pool = null;
+        }
+    }
+
+    /**
+     * Returns the next Move of the winning playout kept from an earlier search, if the given board and letters
+     * are the state it is to be made from, and moves the plan on to the state after it. Otherwise drops the plan
+     * and returns null.
+     */
+    private Move followPlan(BananaBoard board, Rack letters) throws FileNotFoundException {
+        if (_plan == null || _plan.isEmpty() || _planState != (board.zobristHash() ^ letters.zobristHash())) {
+            _plan = null;
+            return null;
+        }
+        Move next = _plan.remove(0);
+        if (!board.applyMove(next)) {
+            _plan = null;
+            return null;
+        }
+        Rack after = new Rack(letters);
+        after.add(next.getSharedLetter());
+        after.useWord(next.getNewWord());
+        _planState = board.zobristHash() ^ after.zobristHash();
+        board.undoMove();
+        return next;
+    }
+
+    /**
+     * One search for a Move: the tree, shared by every worker, and what the workers need to know to stop.
+     */
+    private class Search {
+        /** The node for the state searched from.*/
+        private final Node _root;
+        /** The number of tiles in hand at the root.*/
+        private final int _rootTiles;
+        /** Tells the search to stop early.*/
+        private final BooleanSupplier _stopped;
+        /** The System.nanoTime() value at which the search must stop, or 0 for no limit.*/
+        private final long _deadline;
+        /** The number of playouts started so far.*/
+        private final AtomicInteger _started;
+        /** The Moves of the first playout to empty the hand, from the root, or null until there is one.*/
+        private final AtomicReference<List<Move>> _win;
+        /** The metrics that node expansions are recorded into.*/
+        private final SearchMetrics _metrics;
+
+        /**
+         * Constructor that sets up a search from the given state.
+         */
+        private Search(BananaBoard board, Rack letters, BooleanSupplier stopped) {
+            _root = new Node(null, new Object());
+            _rootTiles = letters.total();
+            _stopped = stopped;
+            _deadline = _timeBudget > 0 ? System.nanoTime() + _timeBudget * 1000000 : 0;
+            _started = new AtomicInteger();
+            _win = new AtomicReference<>();
+            _metrics = board.getMetrics();
+        }
+
+        /**
+         * Returns whether the search should stop: a playout has won, the time is up, or the caller said to.
+         */
+        private boolean finished() {
+            return _win.get() != null || _stopped.getAsBoolean()
+                    || (_deadline != 0 && System.nanoTime() - _deadline > 0);
+        }
+
+        /**
+         * The loop run by each worker, making playouts on the given board and letters, which start in the root's
+         * state and are put back in it after every playout, until the search is finished or out of playouts.
+         */
+        private void work(BananaBoard board, Rack letters, Random random) throws FileNotFoundException {
+            while (!finished() && (_playouts == 0 || _started.getAndIncrement() < _playouts)) {
+                playout(board, letters, random);
+            }
+        }
+
+        /**
+         * Makes one playout: walks down the tree to the first untried Move, plays out the game from there, and
+         * adds the reward to every node walked through. The board and letters are put back as they were.
+         */
+        private void playout(BananaBoard board, Rack letters, Random random) throws FileNotFoundException {
+            ArrayList<Node> path = new ArrayList<>();
+            ArrayList<Move> line = new ArrayList<>();
+            Node node = _root;
+            while (!letters.isEmpty()) {
+                if (!node.isExpanded()) {
+                    node.expand(board.legalMovesDawg(letters));
+                    _metrics.nodeExpanded();
+                }
+                Node child = node.select();
+                if (child == null) {
+                    break;
+                }
+                path.add(child);
+                if (!board.applyMove(child._move)) {
+                    throw new BananaException("A Move in the search tree is no longer legal.");
+                }
+                play(letters, child._move);
+                line.add(child._move);
+                node = child;
+                if (child.visits() == 0) {
+                    break;
+                }
+            }
+            RackOracle oracle = Utils.getRackOracle();
+            while (!letters.isEmpty() && oracle.canPlayAll(letters, board.letterMask())) {
+                ArrayList<Move> moves = board.legalMovesDawg(letters);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                Move m = pick(moves, random);
+                if (!board.applyMove(m)) {
+                    break;
+                }
+                play(letters, m);
+                line.add(m);
+            }
+            double reward;
+            if (letters.isEmpty()) {
+                reward = 1;
+                _win.compareAndSet(null, new ArrayList<>(line));
+            } else {
+                reward = STUCK_REWARD * (_rootTiles - letters.total()) / _rootTiles;
+            }
+            for (int i = line.size() - 1; i >= 0; i--) {
+                Move m = line.get(i);
+                letters.returnWord(m.getNewWord());
+                letters.remove(m.getSharedLetter());
+                board.undoMove();
+            }
+            _root.backup(path, reward);
+        }
+
+        /**
+         * Returns the Move a playout makes from the given legal Moves, as set by the policy.
+         */
+        private Move pick(ArrayList<Move> moves, Random random) {
+            if (_policy == Playout.RANDOM) {
+                return moves.get(random.nextInt(moves.size()));
+            }
+            Move best = null;
+            int bestLength = 0;
+            int ties = 0;
+            for (Move m : moves) {
+                int length = m.getNewWord().length();
+                if (length > bestLength) {
+                    best = m;
+                    bestLength = length;
+                    ties = 1;
+                } else if (length == bestLength && random.nextInt(++ties) == 0) {
+                    best = m;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Makes the given Move on the given letters, the same way Player does: the shared letter comes from the
+     * board, and every letter of the new word is then taken from hand.
+     */
+    private static void play(Rack letters, Move m) {
+        letters.add(m.getSharedLetter());
+        letters.useWord(m.getNewWord());
+    }
+
+    /**
+     * A node of the search tree: the state reached by making its Move from its parent's state. Every field but
+     * _move and _lock is guarded by _lock, which is shared by every node of a tree, since the work done while
+     * holding it is tiny next to generating Moves, which is done without it.
+     */
+    private static class Node {
+        /** The Move that leads here from the parent, or null at the root.*/
+        private final Move _move;
+        /** The lock of the whole tree.*/
+        private final Object _lock;
+        /** A Node for each legal Move from this state, in the order they were generated, or null until the
+         * first playout through this node generates them.*/
+        private ArrayList<Node> _children;
+        /** The number of playouts scored through this node, and the total of their rewards.*/
+        private int _visits;
+        private double _reward;
+        /** The number of playouts walking through this node that haven't been scored yet. Each counts as a
+         * visit with no reward until it is.*/
+        private int _virtualLosses;
+
+        /**
+         * Constructor that creates an untried node for the given Move, in the tree with the given lock.
+         */
+        private Node(Move move, Object lock) {
+            _move = move;
+            _lock = lock;
+        }
+
+        /**
+         * Returns whether this node's children have been generated.
+         */
+        private boolean isExpanded() {
+            synchronized (_lock) {
+                return _children != null;
+            }
+        }
+
+        /**
+         * Sets this node's children to a node for each of the given Moves, unless another worker got there first.
+         */
+        private void expand(ArrayList<Move> moves) {
+            ArrayList<Node> children = new ArrayList<>(moves.size());
+            for (Move m : moves) {
+                children.add(new Node(m, _lock));
+            }
+            synchronized (_lock) {
+                if (_children == null) {
+                    _children = children;
+                }
+            }
+        }
+
+        /**
+         * Returns the child with the highest UCT value, counting virtual losses as visits, and adds a virtual
+         * loss to it. Children that have never been tried come first, in the order they were generated. Returns
+         * null if there are no children.
+         */
+        private Node select() {
+            synchronized (_lock) {
+                Node best = null;
+                double bestValue = Double.NEGATIVE_INFINITY;
+                double logVisits = Math.log(Math.max(1, _visits + _virtualLosses));
+                for (Node child : _children) {
+                    int n = child._visits + child._virtualLosses;
+                    if (n == 0) {
+                        best = child;
+                        break;
+                    }
+                    double value = child._reward / n + EXPLORATION * Math.sqrt(logVisits / n);
+                    if (value > bestValue) {
+                        best = child;
+                        bestValue = value;
+                    }
+                }
+                if (best != null) {
+                    best._virtualLosses++;
+                }
+                return best;
+            }
+        }
+
+        /**
+         * Returns the number of playouts scored through this node. A node no playout has been scored through yet
+         * is a leaf, which playouts continue from with the playout policy.
+         */
+        private int visits() {
+            synchronized (_lock) {
+                return _visits;
+            }
+        }
+
+        /**
+         * Called on the root. Adds the given reward to the root and every node on the given path down from it,
+         * taking back the virtual loss each node on the path was given.
+         */
+        private void backup(ArrayList<Node> path, double reward) {
+            synchronized (_lock) {
+                _visits++;
+                _reward += reward;
+                for (Node node : path) {
+                    node._visits++;
+                    node._reward += reward;
+                    node._virtualLosses--;
+                }
+            }
+        }
+
+        /**
+         * Called on the root. Returns the Move of the child tried most, breaking ties by average reward, or null
+         * if there are no children.
+         */
+        private Move mostTried() {
+            synchronized (_lock) {
+                Node best = null;
+                if (_children != null) {
+                    for (Node child : _children) {
+                        if (best == null || child._visits > best._visits || (child._visits == best._visits
+                                && child._reward > best._reward)) {
+                            best = child;
+                        }
+                    }
+                }
+                return best == null ? null : best._move;
+            }
+        }
+    }
+}
@@ -64,7 +64,29 @@ public class Move {
     /**
      * Utility method, returns the letter that is shared between the two words involved in this Move.
      */
-    public String getSharedLetter() {
-        return _newWord.charAt(_newIndex) + "";
+    public char getSharedLetter() {
+        return _newWord.charAt(_newIndex);
+    }
+
+    /**
+     * Two Moves are equal if they add the same new word to the same word on the board, at the same
+     * indexes and in the same direction.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Move)) {
+            return false;
+        }
+        Move m = (Move) obj;
+        return _addTo.equals(m._addTo) && _addToIndex == m._addToIndex && _newWord.equals(m._newWord)
+                && _newIndex == m._newIndex && _dir == m._dir;
+    }
+
+    /**
+     * Returns the hashCode for this Move instance.
+     */
+    @Override
+    public int hashCode() {
+        return (_addTo.hashCode() * 31 + _addToIndex) * 31 + _newWord.hashCode() * 17 + _newIndex * 2 + _dir;
     }
 }
@@ -1,7 +1,15 @@
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class representing the AI that makes moves and adds words to a BananaBoard given an initial
@@ -14,11 +22,11 @@ public class Player {
 
     /** The BananaBoard that this Player is actively adding words to.*/
     private BananaBoard _board;
-    /** The original Map of letter counts, saved in case a need to revert to a previous
+    /** The original Rack of letters, saved in case a need to revert to a previous
      * state arises during the execution of the program.*/
-    private HashMap<String, Integer> _originalLetters;
-    /** The current Map of remaining letter counts.*/
-    private HashMap<String, Integer> _letters;
+    private Rack _originalLetters;
+    /** The current Rack of remaining letters.*/
+    private Rack _letters;
     /** An int value near Integer.MAX_VALUE that signifies a winning move.*/
     private static final int WIN_SCORE = Integer.MAX_VALUE - 30;
     /** An int value that represents the maximum possible Integer value.*/
@@ -27,111 +35,847 @@ public class Player {
     private Move _foundMove;
     /** The depth at which the game tree searches. Default value is 1.*/
     private int _searchDepth;
+    /** Whether to generate moves with BananaBoard's Dawg engine rather than by anagramming the
+     * whole rack. Both engines find the same Moves. Default value is true.*/
+    private boolean _useDawg;
+    /** The number of threads to search with. 1, the default, searches sequentially.*/
+    private int _parallelism;
+    /** The pool that parallel searches run in, created the first time one is needed.*/
+    private ForkJoinPool _pool;
+    /** Set once a parallel search finds a winning line, telling every other branch of that
+     * search to stop early.*/
+    private volatile boolean _stopSearch;
+    /** The table of game states already searched, shared across every search this Player makes,
+     * or null to search without one.*/
+    private TranspositionTable _table;
+    /** The number of states the transposition table holds by default.*/
+    private static final int DEFAULT_TABLE_SIZE = 1 << 16;
+    /** The number of Moves kept at each ply of the game tree after ordering them by their static
+     * score, or 0, the default, to keep every Move.*/
+    private int _beamWidth;
+    /** The time, in milliseconds, that each call to searchForMove may take, or 0, the default, for
+     * no limit. With a time limit set, the search deepens iteratively instead of using _searchDepth.*/
+    private long _moveTimeBudget;
+    /** The time, in milliseconds, that each call to createBananagrams may take, or 0, the default,
+     * for no limit. Like _moveTimeBudget, turns on iterative deepening.*/
+    private long _solveTimeBudget;
+    /** The System.nanoTime() value by which the current solve must finish, if it has a time limit.*/
+    private long _solveDeadline;
+    /** The System.nanoTime() value at which the current search must stop, or 0 for no limit.*/
+    private long _deadline;
+    /** Set when the current search ran out of time before finishing.*/
+    private volatile boolean _timedOut;
+    /** The best Move found by the last finished iteration of an iterative deepening search, tried
+     * first by the next one.*/
+    private Move _previousBest;
+    /** Set by cancel to stop this Player's solve from another thread.*/
+    private volatile boolean _cancelled;
+    /** The strategy that chooses this Player's Moves, or null, the default, to use the game tree.*/
+    private SearchStrategy _strategy;
+    /** The most states a BacktrackingSearch may search when this Player's search can't find a Move, or 0 to
+     * give up at once.*/
+    private long _backtrackBudget;
+    /** The counts and times of this Player's current or most recent solve.*/
+    private SearchMetrics _metrics;
+    /** The file this Player's solves are checkpointed to, or null, the default, to not checkpoint them.*/
+    private Path _checkpointFile;
+    /** The time, in milliseconds, between checkpoints written while a solve runs, or 0 to only write one when
+     * the solve ends or the program exits.*/
+    private long _checkpointInterval;
+    /** The board and letters of the current solve, as Checkpoint.position returns them, taken after every Move
+     * so that checkpoints written from other threads never read the board while it changes.*/
+    private volatile byte[] _position;
+    /** How far the last iterative deepening search got, written into every checkpoint.*/
+    private volatile Frontier _frontier;
+    /** The Frontier read from a checkpoint by resume, which the first iterative deepening search carries on from
+     * if it searches the same state.*/
+    private Frontier _resumeFrontier;
+    /** The thread that writes checkpoints while a solve runs, if it has an interval.*/
+    private ScheduledExecutorService _checkpointer;
+    /** The shutdown hook that writes a last checkpoint if the program exits while a solve runs.*/
+    private Thread _checkpointHook;
+    /** The number of candidate first words setFirstWord scores between checks of whether the solve must stop.
+     * A power of two.*/
+    private static final int STOP_CHECK_INTERVAL = 1024;
+    /** The most letters from hand that a single Move can use: the longest valid word, minus the
+     * letter it shares with the board.*/
+    private static final int MAX_LETTERS_PER_MOVE = 14;
 
     /**
-     * Standard constructor for a Player instance, takes a Map of letter counts
+     * Standard constructor for a Player instance, takes a Rack of letters
      * as an argument.
      */
-    public Player(HashMap<String, Integer> letters) {
+    public Player(Rack letters) {
         _letters = letters;
-        _originalLetters = new HashMap<>(letters);
+        _originalLetters = new Rack(letters);
         _board = new BananaBoard();
         _searchDepth = 1;
+        _useDawg = true;
+        _parallelism = 1;
+        _table = new TranspositionTable(DEFAULT_TABLE_SIZE);
+        _backtrackBudget = BacktrackingSearch.DEFAULT_NODE_BUDGET;
+        _metrics = new SearchMetrics();
+        _board.setMetrics(_metrics);
     }
 
     /**
-     * Alternate constructor for a Player instance that take a Map of letter counts,
+     * Alternate constructor for a Player instance that take a Rack of letters,
      * but also an integer representing the desired side length of this Player's
      * BananaBoard as arguments.
      */
-    public Player(HashMap<String, Integer> letters, int boardDim) {
+    public Player(Rack letters, int boardDim) {
         _letters = letters;
-        _originalLetters = new HashMap<>(letters);
+        _originalLetters = new Rack(letters);
         _board = new BananaBoard(boardDim);
         _searchDepth = 1;
+        _useDawg = true;
+        _parallelism = 1;
+        _table = new TranspositionTable(DEFAULT_TABLE_SIZE);
+        _backtrackBudget = BacktrackingSearch.DEFAULT_NODE_BUDGET;
+        _metrics = new SearchMetrics();
+        _board.setMetrics(_metrics);
     }
 
     /**
-     * The method called from the Main class that creates a valid crossword.
+     * The method called from the Main class that creates a valid crossword. If the search can't find a Move, the
+     * solve starts again with a BacktrackingSearch, and if that fails too, a message is printed instead. A message
+     * is also printed if the solve runs out of time.
      */
     public void createBananagrams() throws FileNotFoundException {
-        setFirstWord();
-        while (!noLettersLeft(_letters)) {
-            searchForMove();
+        SearchMetrics.SolveEvent event = beginSolve();
+        if (_board.getWords().isEmpty()) {
+            setFirstWord();
+        }
+        while (!_letters.isEmpty()) {
+            if (!solveStopped()) {
+                searchForMove();
+            }
+            if (solveStopped()) {
+                System.out.println("The solve ran out of time with " + _letters.total() + " letters left over: "
+                        + _letters + ".");
+                endSolve(event, false);
+                return;
+            }
             if (_foundMove == null) {
-                System.out.println("Unable to find an accurate crossword. For now, try entering more characters. As this " +
-                        "tool is improved with better heuristic expressions, this query will yield better results. Thanks!");
+                if (!backtrack()) {
+                    System.out.println("Unable to find an accurate crossword. For now, try entering more characters. As this " +
+                            "tool is improved with better heuristic expressions, this query will yield better results. Thanks!");
+                    endSolve(event, false);
+                    return;
+                }
+                break;
             }
-            _board.addWord(_foundMove);
-            useLetters(_foundMove.getNewWord(), _letters);
-            String common = _foundMove.getSharedLetter();
-            _letters.put(common, _letters.getOrDefault(common, 0) + 1);
+            playFoundMove();
         }
+        endSolve(event, true);
         _board.displayBoard();
     }
 
     /**
-     * *Not currently in use* This method is a key part of a later development for this project, and
-     * allows the user to add more letters to a board after it has already been formed.
+     * Creates a valid crossword like createBananagrams, but without printing anything, and returns the finished
+     * board. Throws a BananaException if neither the search nor the BacktrackingSearch can use every letter, or
+     * as soon as the solve is cancelled or runs out of time. Used where many Players run at once and report their
+     * results themselves, such as the batch solver.
      */
-    public void addLetters(HashMap<String, Integer> moreLetters) throws FileNotFoundException {
-        _letters = moreLetters;
-        while (!noLettersLeft(_letters)) {
-            searchForMove();
-            if (_foundMove == null) {
-                System.out.println("Unable to find an accurate crossword. For now, try entering more characters. As this " +
-                        "tool is improved with better heuristic expressions, this query will yield better results. Thanks!");
+    public BananaBoard solve() throws FileNotFoundException {
+        SearchMetrics.SolveEvent event = beginSolve();
+        boolean solved = false;
+        try {
+            if (_board.getWords().isEmpty()) {
+                setFirstWord();
+            }
+            while (!_letters.isEmpty()) {
+                checkStopped();
+                searchForMove();
+                checkStopped();
+                if (_foundMove == null) {
+                    if (backtrack()) {
+                        break;
+                    }
+                    checkStopped();
+                    throw new BananaException("Unable to find an accurate crossword. " + _letters.total()
+                            + " letters are left over: " + _letters + ".");
+                }
+                playFoundMove();
             }
-            _board.addWord(_foundMove);
-            useLetters(_foundMove.getNewWord(), _letters);
-            String common = _foundMove.getSharedLetter();
-            _letters.put(common, _letters.getOrDefault(common, 0) + 1);
+            solved = true;
+            return _board;
+        } finally {
+            endSolve(event, solved);
+        }
+    }
+
+    /**
+     * Helper method for createBananagrams and solve that starts the solve's time limit, gives it fresh metrics,
+     * starts checkpointing it, and starts its Flight Recorder event.
+     */
+    private SearchMetrics.SolveEvent beginSolve() {
+        _solveDeadline = System.nanoTime() + _solveTimeBudget * 1000000;
+        _metrics = new SearchMetrics();
+        _board.setMetrics(_metrics);
+        _board.setStopCheck(this::solveStopped);
+        startCheckpoints();
+        SearchMetrics.SolveEvent event = new SearchMetrics.SolveEvent();
+        event.tiles = _letters.total();
+        event.boardSize = _board.getDim();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Helper method for createBananagrams and solve that writes the solve's last checkpoint, adds its metrics to
+     * the global metrics, and records its Flight Recorder event, if one is being recorded.
+     */
+    private void endSolve(SearchMetrics.SolveEvent event, boolean solved) {
+        stopCheckpoints();
+        SearchMetrics.global().add(_metrics);
+        if (event.shouldCommit()) {
+            event.solved = solved;
+            event.record(_metrics);
+            event.commit();
+        }
+    }
+
+    /**
+     * Helper method for createBananagrams and solve, called when the search can't find a Move. Starts again from
+     * an empty board with a BacktrackingSearch over every letter of the solve, and if it finds a crossword, takes
+     * its board and empties the hand. Returns whether it did.
+     */
+    private boolean backtrack() throws FileNotFoundException {
+        if (_backtrackBudget == 0) {
+            return false;
+        }
+        BananaBoard solved = new BacktrackingSearch(_backtrackBudget).solve(_originalLetters, _board.getDim(),
+                _metrics, this::solveStopped);
+        if (solved == null) {
+            return false;
+        }
+        _board = solved;
+        _letters.clear();
+        savePosition();
+        return true;
+    }
+
+    /**
+     * Helper method for createBananagrams, solve and peel that adds _foundMove to the board and takes the letters
+     * it uses from the hand.
+     */
+    private void playFoundMove() throws FileNotFoundException {
+        _board.addWord(_foundMove);
+        _letters.add(_foundMove.getSharedLetter());
+        _letters.useWord(_foundMove.getNewWord());
+        savePosition();
+    }
+
+    /**
+     * Checkpoints every solve this Player makes to the given file, so that a run that is killed can carry on
+     * with resume. A checkpoint is written every intervalMillis milliseconds while a solve runs, or never if it
+     * is 0, and again when the solve ends and if the program exits first. Writing one takes about ten milliseconds
+     * with the default transposition table, most of it for the table, and happens on a thread of its own. A file of null stops
+     * checkpointing.
+     */
+    public void setCheckpoint(Path file, long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new BananaException("The checkpoint interval can't be negative.");
+        }
+        _checkpointFile = file;
+        _checkpointInterval = intervalMillis;
+    }
+
+    /**
+     * Returns a Player that carries on the solve saved in the given checkpoint, with the same board, letters,
+     * search depth and transposition table, and, if its last search was an iterative deepening one, starting the
+     * next such search from the depth it had finished. Other settings, such as time limits, threads and the
+     * checkpoint file, aren't saved, and are set again as for a new Player. Throws a BananaException if the file
+     * isn't a checkpoint.
+     */
+    public static Player resume(Path file) throws IOException {
+        Checkpoint saved = Checkpoint.read(file);
+        Player player = new Player(saved.getLetters());
+        player._board = saved.getBoard();
+        player._board.setMetrics(player._metrics);
+        player._originalLetters = saved.getOriginalLetters();
+        player._searchDepth = saved.getSearchDepth();
+        player._table = saved.getTable();
+        player._resumeFrontier = saved.getFrontier();
+        return player;
+    }
+
+    /**
+     * Helper method for beginSolve that, if this Player checkpoints its solves, starts writing checkpoints at its
+     * interval and registers the shutdown hook that writes one if the program exits.
+     */
+    private void startCheckpoints() {
+        if (_checkpointFile == null) {
+            return;
+        }
+        _position = Checkpoint.position(_board, _originalLetters, _letters);
+        _checkpointHook = new Thread(this::writeCheckpoint, "checkpoint-on-exit");
+        Runtime.getRuntime().addShutdownHook(_checkpointHook);
+        if (_checkpointInterval > 0) {
+            _checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            _checkpointer.scheduleWithFixedDelay(this::writeCheckpoint, _checkpointInterval, _checkpointInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Helper method for endSolve that stops the checkpoints startCheckpoints started, and writes the last one.
+     */
+    private void stopCheckpoints() {
+        if (_checkpointHook == null) {
+            return;
+        }
+        if (_checkpointer != null) {
+            _checkpointer.shutdown();
+            _checkpointer = null;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(_checkpointHook);
+        } catch (IllegalStateException e) {
+            // The program is already exiting, and the hook is writing the checkpoint.
+        }
+        _checkpointHook = null;
+        writeCheckpoint();
+    }
+
+    /**
+     * Takes the board and letters for the next checkpoint, if this Player checkpoints its solves.
+     */
+    private void savePosition() {
+        if (_checkpointFile != null) {
+            _position = Checkpoint.position(_board, _originalLetters, _letters);
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the current solve. Called from the checkpoint thread and the shutdown hook as well
+     * as the thread solving, one at a time. A checkpoint that can't be written is reported and skipped, so that
+     * it never stops the solve.
+     */
+    private synchronized void writeCheckpoint() {
+        Path file = _checkpointFile;
+        byte[] position = _position;
+        if (file == null || position == null) {
+            return;
+        }
+        try {
+            Checkpoint.write(file, position, _searchDepth, _frontier, _table);
+        } catch (IOException e) {
+            System.err.println("Unable to write a checkpoint to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns whether the current solve must stop, because it was cancelled or ran out of time.
+     */
+    private boolean solveStopped() {
+        return _cancelled || (_solveTimeBudget > 0 && System.nanoTime() - _solveDeadline > 0);
+    }
+
+    /**
+     * Helper method for solve and peel that throws a BananaException if the current solve was cancelled or has
+     * run out of time.
+     */
+    private void checkStopped() {
+        if (_cancelled) {
+            throw new BananaException("The solve was cancelled.");
+        }
+        if (solveStopped()) {
+            throw new BananaException("The solve ran out of time.");
+        }
+    }
+
+    /**
+     * Returns the counts and times of this Player's current or most recent solve, which are added to
+     * SearchMetrics.global() once it ends.
+     */
+    public SearchMetrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * Stops a solve running on another thread as soon as its search next checks whether it should stop, after
+     * which solve throws a BananaException. Used to hold a solve to a hard deadline, such as a request timeout.
+     */
+    public void cancel() {
+        _cancelled = true;
+    }
+
+    /**
+     * Adds more letters to a board that has already been formed, like a peel in a real game, and displays the
+     * result. Letters that can't be played yet are printed, and stay in hand for the next call.
+     */
+    public void addLetters(Rack moreLetters) throws FileNotFoundException {
+        if (!peel(moreLetters)) {
+            System.out.println("Unable to play every letter yet. " + _letters.total() + " letters are left in hand: "
+                    + _letters + ".");
         }
         _board.displayBoard();
     }
 
     /**
-     * This method calls findMove and sets/returns _foundMove accordingly. Does so with deep copies
-     * of this Player's BananaBoard and Map of letter counts.
+     * Adds the given tiles to this Player's hand and plays them onto its board, keeping every word already placed,
+     * and returns whether every letter in hand was played. Letters that can't be played stay in hand, and are
+     * tried again along with the tiles of the next peel. If the board is still empty, the first word is placed
+     * from the hand, so a game can be played entirely with peels.
+     *
+     * A long-lived Player keeps everything it has built up between peels: its board, its transposition table,
+     * and the shared anagram cache, and since the hand is small once the board is formed, generating Moves only
+     * costs as much as the few letters that were added. Each peel is counted and recorded as a solve of its own.
+     * @param tiles The tiles to add. They are copied, so the Rack given is left unchanged.
+     */
+    public boolean peel(Rack tiles) throws FileNotFoundException {
+        _letters.addAll(tiles);
+        _originalLetters.addAll(tiles);
+        SearchMetrics.SolveEvent event = beginSolve();
+        boolean placedAll = false;
+        try {
+            if (_board.getWords().isEmpty()) {
+                if (Utils.allPossibleWords(_letters).isEmpty()) {
+                    return false;
+                }
+                setFirstWord();
+            }
+            while (!_letters.isEmpty()) {
+                checkStopped();
+                searchForMove();
+                checkStopped();
+                if (_foundMove == null) {
+                    return false;
+                }
+                playFoundMove();
+            }
+            placedAll = true;
+            return true;
+        } finally {
+            endSolve(event, placedAll);
+        }
+    }
+
+    /**
+     * Returns this Player's board, as it stands between solves or peels.
+     */
+    public BananaBoard getBoard() {
+        return _board;
+    }
+
+    /**
+     * Returns a copy of the letters this Player still holds in hand.
+     */
+    public Rack getLetters() {
+        return new Rack(_letters);
+    }
+
+    /**
+     * Sets whether this Player generates moves with BananaBoard's Dawg engine, or by anagramming the
+     * whole rack and checking every candidate.
+     */
+    public void setUseDawg(boolean useDawg) {
+        _useDawg = useDawg;
+    }
+
+    /**
+     * Sets the depth at which the game tree searches.
+     */
+    public void setSearchDepth(int depth) {
+        if (depth < 1) {
+            throw new BananaException("The search depth must be at least 1.");
+        }
+        _searchDepth = depth;
+    }
+
+    /**
+     * Gives each search for a Move the given number of milliseconds, and each call to createBananagrams the
+     * given number of milliseconds overall. A limit of 0 means no limit. With either limit set, searchForMove
+     * searches to depth 1, then 2, then 3 and so on until it runs out of time, and uses the Move from the
+     * deepest search it finished. The limit on the whole solve is a hard one: once it passes, move generation
+     * and the choice of the first word stop where they are, and the solve stops as if it had been cancelled.
+     */
+    public void setTimeBudget(long perMoveMillis, long perSolveMillis) {
+        if (perMoveMillis < 0 || perSolveMillis < 0) {
+            throw new BananaException("A time limit can't be negative.");
+        }
+        _moveTimeBudget = perMoveMillis;
+        _solveTimeBudget = perSolveMillis;
+    }
+
+    /**
+     * Turns this Player's search into a beam search of the given width. At every ply of the game tree, the
+     * legal Moves are ordered by the static score of the board they lead to, and only the best width of them
+     * are searched. A width of 0 searches every legal Move in the order they were generated.
+     */
+    public void setBeamWidth(int width) {
+        if (width < 0) {
+            throw new BananaException("The beam width can't be negative.");
+        }
+        _beamWidth = width;
+    }
+
+    /**
+     * Sets the number of threads this Player searches with. With more than one, the Moves at the root of
+     * the game tree are searched in parallel on a ForkJoinPool, each on its own copy of the board and letters.
+     */
+    public void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new BananaException("A search needs at least one thread.");
+        }
+        _parallelism = threads;
+        shutdown();
+    }
+
+    /**
+     * Shuts down the threads of this Player's parallel searches, if it has made any. A later parallel search
+     * starts new ones, so this can be called whenever the Player is done searching for a while, and should be
+     * called once it is done for good.
+     */
+    public void shutdown() {
+        if (_pool != null) {
+            _pool.shutdown();
+            _pool = null;
+        }
+    }
+
+    /**
+     * Hands the choice of this Player's Moves to the given strategy, such as a MonteCarloSearch, in place of
+     * the game tree. The search depth, beam width, per-Move time limit and number of threads then only apply to
+     * the game tree, while a limit on the whole solve and cancel still stop the strategy. A strategy of null
+     * goes back to the game tree.
+     */
+    public void setStrategy(SearchStrategy strategy) {
+        _strategy = strategy;
+    }
+
+    /**
+     * Sets the most states that a BacktrackingSearch may search when this Player's search can't find a Move, in
+     * place of BacktrackingSearch.DEFAULT_NODE_BUDGET. A budget of 0 gives up at once instead, as peel always does,
+     * since peel keeps the words already placed.
+     */
+    public void setBacktrackBudget(long nodes) {
+        if (nodes < 0) {
+            throw new BananaException("A node budget can't be negative.");
+        }
+        _backtrackBudget = nodes;
+    }
+
+    /**
+     * This method calls findMove and sets/returns _foundMove accordingly. Does so with a single deep copy
+     * of this Player's BananaBoard and Rack of letters, which findMove makes and takes back Moves on.
      */
     private Move searchForMove() throws FileNotFoundException {
+        SearchMetrics.MoveSearchEvent event = new SearchMetrics.MoveSearchEvent();
+        event.begin();
+        long nodes = event.isEnabled() ? _metrics.nodesExpanded() : 0;
+        try {
+            return searchForMoveUnrecorded();
+        } finally {
+            if (event.shouldCommit()) {
+                event.lettersLeft = _letters.total();
+                event.nodesExpanded = _metrics.nodesExpanded() - nodes;
+                event.move = _foundMove == null ? null : _foundMove.getNewWord();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Helper method for searchForMove that does the search, without recording its Flight Recorder event.
+     */
+    private Move searchForMoveUnrecorded() throws FileNotFoundException {
         BananaBoard temp = new BananaBoard(_board);
-        HashMap<String, Integer> letterCopy = new HashMap<>(_letters);
+        Rack letterCopy = new Rack(_letters);
         _foundMove = null;
-        findMove(temp, letterCopy, _searchDepth, true);
-        return _foundMove;
+        Move found;
+        if (_strategy != null) {
+            found = _strategy.chooseMove(temp, letterCopy, this::solveStopped);
+            _foundMove = found;
+        } else if (_moveTimeBudget > 0 || _solveTimeBudget > 0) {
+            found = searchIteratively(temp, letterCopy);
+        } else {
+            searchToDepth(temp, letterCopy, _searchDepth);
+            found = _foundMove;
+        }
+        _board.takeMoveCache(temp);
+        return found;
+    }
+
+    /**
+     * Helper method for searchForMove that searches the given board and letters to the given depth, in
+     * parallel if this Player has more than one thread, and sets _foundMove.
+     */
+    private int searchToDepth(BananaBoard board, Rack letters, int depth) throws FileNotFoundException {
+        if (_parallelism > 1) {
+            return findMoveParallel(board, letters, depth);
+        } else {
+            return findMove(board, letters, depth, true);
+        }
+    }
+
+    /**
+     * The anytime version of searchForMove, used when this Player has a time limit. Searches to depth 1, 2, 3
+     * and so on, trying the best Move of each finished depth first in the next, until the time runs out, a
+     * winning or losing line is found, or no deeper search is possible. The Move from the deepest finished search
+     * is kept, and a search cut short by the time limit is thrown away, except at depth 1, where the best Move
+     * among those it got to is better than none. Each finished depth is recorded in _frontier for checkpoints, and
+     * a search resumed from one starts at the depth after it.
+     */
+    private Move searchIteratively(BananaBoard board, Rack letters) throws FileNotFoundException {
+        long now = System.nanoTime();
+        _deadline = _moveTimeBudget > 0 ? now + _moveTimeBudget * 1000000 : Long.MAX_VALUE;
+        if (_solveTimeBudget > 0 && _solveDeadline - _deadline < 0) {
+            _deadline = _solveDeadline;
+        }
+        _timedOut = false;
+        _previousBest = null;
+        Move best = null;
+        int firstDepth = 1;
+        long state = board.zobristHash() ^ letters.zobristHash();
+        Frontier resumed = _resumeFrontier;
+        _resumeFrontier = null;
+        if (resumed != null && resumed._state == state && resumed._best != null) {
+            best = resumed._best;
+            _previousBest = best;
+            firstDepth = resumed._depth + 1;
+        }
+        try {
+            for (int depth = firstDepth; depth <= letters.total(); depth++) {
+                _foundMove = null;
+                int score = searchToDepth(board, letters, depth);
+                if (_timedOut) {
+                    if (best == null) {
+                        best = _foundMove;
+                    }
+                    break;
+                }
+                best = _foundMove;
+                _previousBest = best;
+                _frontier = new Frontier(state, depth, best);
+                if (best == null || score == WIN_SCORE || score == -WIN_SCORE) {
+                    break;
+                }
+            }
+        } finally {
+            _deadline = 0;
+            _timedOut = false;
+            _stopSearch = false;
+            _previousBest = null;
+        }
+        _foundMove = best;
+        return best;
+    }
+
+    /**
+     * Returns whether the current search should stop, because a parallel search found a win, the time limit has
+     * passed, or the solve was cancelled. Once the time limit passes, every other branch of the search is told to
+     * stop too.
+     */
+    private boolean searchStopped() {
+        if (_stopSearch || _cancelled) {
+            return true;
+        }
+        if (_deadline != 0 && System.nanoTime() - _deadline > 0) {
+            _timedOut = true;
+            _stopSearch = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parallel version of findMove for the root of the game tree. Scores every legal Move as its own task on
+     * _pool, where work stealing keeps every thread busy however unevenly the subtrees are sized. Once any task
+     * finds a winning line the rest are told to stop, and the first winning Move is saved. Otherwise the Move
+     * saved is the same one findMove would pick, the first of the highest scoring Moves in legalMoves order.
+     */
+    private int findMoveParallel(BananaBoard board, Rack letters, int depth) throws FileNotFoundException {
+        _metrics.nodeExpanded();
+        ArrayList<Move> legalMoves = _useDawg ? board.legalMovesDawg(letters) : board.legalMoves(letters);
+        if (legalMoves.size() == 0) {
+            return heuristic(board, letters, true);
+        }
+        if (_beamWidth > 0) {
+            legalMoves = orderMoves(board, letters, legalMoves);
+        }
+        moveToFront(legalMoves, _previousBest);
+        if (_pool == null) {
+            _pool = new ForkJoinPool(_parallelism);
+        }
+        _stopSearch = false;
+        ArrayList<SearchTask> tasks = new ArrayList<>();
+        for (Move M : legalMoves) {
+            tasks.add(new SearchTask(board, letters, M, depth - 1));
+        }
+        _pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        _stopSearch = _timedOut;
+        int bestScore = 0;
+        Move bestMove = null;
+        for (SearchTask task : tasks) {
+            Integer score = task.join();
+            if (score == null) {
+                continue;
+            }
+            if (score == WIN_SCORE) {
+                bestScore = score;
+                bestMove = task._move;
+                break;
+            }
+            if (bestMove == null || score > bestScore) {
+                bestScore = score;
+                bestMove = task._move;
+            }
+        }
+        _foundMove = bestMove;
+        return bestScore;
+    }
+
+    /**
+     * Class recording how far an iterative deepening search got: the state it searched, the deepest depth it
+     * finished, and the best Move that depth found. Immutable, so that checkpoints can read it from any thread.
+     */
+    static class Frontier {
+        /** The Zobrist hashes of the board and letters searched, combined.*/
+        final long _state;
+        /** The deepest depth the search finished.*/
+        final int _depth;
+        /** The best Move found at that depth, or null if there were none.*/
+        final Move _best;
+
+        /**
+         * Constructor that accepts one argument for each instance variable and assigns them accordingly.
+         */
+        Frontier(long state, int depth, Move best) {
+            _state = state;
+            _depth = depth;
+            _best = best;
+        }
+    }
+
+    /**
+     * A task for findMoveParallel that makes one Move on its own copy of the board and letters, and then
+     * searches the rest of the game tree below it sequentially with findMove. Its result is the score of the
+     * Move, or null if the Move turned out to be illegal or the search stopped before the task started.
+     */
+    private class SearchTask extends RecursiveTask<Integer> {
+        /** The version of this task's serialized form, which every RecursiveTask has.*/
+        private static final long serialVersionUID = 1L;
+        /** The board to copy and make the Move on. Not changed by this task.*/
+        private BananaBoard _parentBoard;
+        /** The letters to copy and make the Move with. Not changed by this task.*/
+        private Rack _parentLetters;
+        /** The Move this task scores.*/
+        private Move _move;
+        /** The depth to search below the Move.*/
+        private int _depth;
+
+        /**
+         * Constructor that sets up a task to score the given Move.
+         */
+        private SearchTask(BananaBoard board, Rack letters, Move move, int depth) {
+            _parentBoard = board;
+            _parentLetters = letters;
+            _move = move;
+            _depth = depth;
+        }
+
+        /**
+         * Copies the board and letters, makes the Move, and scores the result.
+         */
+        @Override
+        protected Integer compute() {
+            if (searchStopped()) {
+                return null;
+            }
+            BananaBoard board = new BananaBoard(_parentBoard);
+            Rack letters = new Rack(_parentLetters);
+            try {
+                if (!board.applyMove(_move)) {
+                    return null;
+                }
+                letters.add(_move.getSharedLetter());
+                letters.useWord(_move.getNewWord());
+                int score = findMove(board, letters, _depth, false);
+                if (score == WIN_SCORE) {
+                    _stopSearch = true;
+                }
+                return score;
+            } catch (FileNotFoundException e) {
+                throw new BananaException(e.getMessage());
+            }
+        }
     }
 
     /**
      * A recursive, maximizing game tree, this function sets _foundMove to the move that results in the maximum
      * score as determined by the heuristic method, and is capable of immediately forcing completed boards if it
-     * detects a set of Moves that would do so. Take a BananaBoard, Map of letter counts, search depth, a boolean
-     * that specifies whether to save the move found to _foundMove, and initial alpha/beta values. Alpha/beta values
-     * are crucial to pruning and drastically reducing search time in mini/max trees, and although they are not
-     * currently in use, they may be used in future versions of this program. This method makes heavy use of the
+     * detects a set of Moves that would do so. Take a BananaBoard, Rack of letters, search depth, and a boolean
+     * that specifies whether to save the move found to _foundMove. Since there is only one player, the tree is
+     * pruned with branch-and-bound rather than alpha/beta: a Move is skipped when upperBound() shows its subtree
+     * can't beat the best score already found, which never changes the Move picked. With a beam width set, only
+     * the best Moves by static score are searched at each ply, in that order. This method makes heavy use of the
      * BananaBoard method legalMoves(), and sorts through them to find the one that results in the best resultant
-     * board, as determined by heuristic().
+     * board, as determined by heuristic(). Each Move is made on the given board and Rack of letters in place,
+     * and taken back once its subtree has been searched, so both are unchanged when this method returns.
+     * States reached again through a different order of Moves are looked up in the transposition table instead
+     * of being searched again, and the best Move found for a state before is tried first. States holding a tile
+     * that the RackOracle shows can never be played score as losses straight away, without generating Moves.
      */
-    private int findMove(BananaBoard board, HashMap<String, Integer> letters,
+    private int findMove(BananaBoard board, Rack letters,
                          int depth, boolean saveMove) throws FileNotFoundException {
+        _metrics.nodeExpanded();
+        long key = board.zobristHash() ^ letters.zobristHash();
+        TranspositionTable.Entry entry = _table == null ? null : _table.get(key);
+        if (!saveMove && entry != null && entry.getDepth() >= depth) {
+            return entry.getScore();
+        }
+        if (!saveMove && !Utils.getRackOracle().canPlayAll(letters, board.letterMask())) {
+            store(key, depth, -WIN_SCORE, null);
+            return -WIN_SCORE;
+        }
         if (depth == 0) {
-            return heuristic(board, letters, false);
+            int score = heuristic(board, letters, false);
+            store(key, depth, score, null);
+            return score;
         }
         int bestScore = 0;
         Move bestMove = null;
         boolean firstMove = true;
-        ArrayList<Move> legalMoves = board.legalMoves(letters);
+        ArrayList<Move> legalMoves = _useDawg ? board.legalMovesDawg(letters) : board.legalMoves(letters);
         if (legalMoves.size() == 0) {
-            return heuristic(board, letters, true);
+            int score = heuristic(board, letters, true);
+            store(key, depth, score, null);
+            return score;
+        }
+        if (_beamWidth > 0) {
+            legalMoves = orderMoves(board, letters, legalMoves);
+        }
+        if (saveMove) {
+            moveToFront(legalMoves, _previousBest);
+        } else if (entry != null) {
+            moveToFront(legalMoves, entry.getBestMove());
         }
         for (Move M : legalMoves) {
-            BananaBoard localCopy = new BananaBoard(board);
-            HashMap<String, Integer> localLetterCopy = new HashMap<>(letters);
-            useLetters(M.getNewWord(), localLetterCopy);
-            String common = M.getSharedLetter();
-            localLetterCopy.put(common, localLetterCopy.getOrDefault(common, 0) + 1);
-            localCopy.addWord(M);
-            int score = findMove(localCopy, localLetterCopy, depth - 1, saveMove);
+            if (!(saveMove && firstMove && depth == 1) && searchStopped()) {
+                break;
+            }
+            if (!board.applyMove(M)) {
+                continue;
+            }
+            letters.add(M.getSharedLetter());
+            letters.useWord(M.getNewWord());
+            if (!firstMove && upperBound(board, letters, depth - 1) <= bestScore) {
+                letters.returnWord(M.getNewWord());
+                letters.remove(M.getSharedLetter());
+                board.undoMove();
+                continue;
+            }
+            int score = findMove(board, letters, depth - 1, false);
+            letters.returnWord(M.getNewWord());
+            letters.remove(M.getSharedLetter());
+            board.undoMove();
             if (score == WIN_SCORE) {
                 bestScore = score;
                 bestMove = M;
@@ -150,18 +894,107 @@ public class Player {
         if (saveMove) {
             _foundMove = bestMove;
         }
+        store(key, depth, bestScore, bestMove);
         return bestScore;
     }
 
+    /**
+     * Moves the given Move to the front of the given List of Moves, if it is in the List. Does nothing if the
+     * Move is null.
+     */
+    private void moveToFront(ArrayList<Move> moves, Move m) {
+        if (m == null) {
+            return;
+        }
+        int index = moves.indexOf(m);
+        if (index > 0) {
+            moves.add(0, moves.remove(index));
+        }
+    }
+
+    /**
+     * Helper method for findMove that returns the given Moves ordered from the highest to the lowest static
+     * score, as given by heuristic() for the board each Move leads to, keeping only the first _beamWidth of
+     * them. Moves with equal scores keep their original order.
+     */
+    private ArrayList<Move> orderMoves(BananaBoard board, Rack letters, ArrayList<Move> moves) throws FileNotFoundException {
+        int[] scores = new int[moves.size()];
+        Integer[] order = new Integer[moves.size()];
+        for (int i = 0; i < moves.size(); i++) {
+            Move M = moves.get(i);
+            order[i] = i;
+            if (!board.applyMove(M)) {
+                scores[i] = -INFINITY;
+                continue;
+            }
+            letters.add(M.getSharedLetter());
+            letters.useWord(M.getNewWord());
+            scores[i] = heuristic(board, letters, false);
+            letters.returnWord(M.getNewWord());
+            letters.remove(M.getSharedLetter());
+            board.undoMove();
+        }
+        Arrays.sort(order, (i1, i2) -> Integer.compare(scores[i2], scores[i1]));
+        ArrayList<Move> ordered = new ArrayList<>();
+        for (int i = 0; i < order.length && ordered.size() < _beamWidth; i++) {
+            ordered.add(moves.get(order[i]));
+        }
+        return ordered;
+    }
+
+    /**
+     * Returns a score that no state reachable from the given one within depth more Moves can beat, used by
+     * findMove to skip subtrees that can't improve on the best Move already found. Each Move adds one word,
+     * scoring the letter it shares with the board plus the letters it uses from hand, and heuristic() only ever
+     * subtracts from the total of the word scores, so the bound is the current total plus the score of every
+     * letter in hand plus the best possible shared letter for each Move. If the letters in hand could all be
+     * used within depth Moves, a win is still possible and no score can be ruled out.
+     */
+    private int upperBound(BananaBoard board, Rack letters, int depth) {
+        if (letters.total() <= depth * MAX_LETTERS_PER_MOVE) {
+            return WIN_SCORE;
+        }
+        int bound = board.score() + depth * Utils.maxLetterScore();
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            bound += letters.count(letter) * Utils.letterScore(letter);
+        }
+        return bound;
+    }
+
+    /**
+     * Helper method for findMove that records a searched state in the transposition table, if there is one.
+     * Nothing is recorded once the search has been told to stop, since the scores found then may be incomplete,
+     * and move generation may have been cut short.
+     */
+    private void store(long key, int depth, int score, Move bestMove) {
+        if (_table != null && !searchStopped()) {
+            _table.put(key, depth, score, bestMove);
+        }
+    }
+
+    /**
+     * Sets the number of game states this Player's transposition table can hold, replacing the table and
+     * everything in it. A size of 0 turns the table off.
+     */
+    public void setTranspositionTableSize(int size) {
+        _table = size > 0 ? new TranspositionTable(size) : null;
+    }
+
     /**
      * Uses Utils allPossibleWords methods to generate a list of possible first words, and then picks the
-     * best one by finding the one with the highest word score, as defined and calculated in Utils.
+     * best one by finding the one with the highest word score, as defined and calculated in Utils. If the solve
+     * is cancelled or runs out of time first, no word is placed.
      */
     private void setFirstWord() throws FileNotFoundException {
-        HashSet<String> possibleFirsts = Utils.allPossibleWords(_letters);
+        Set<String> possibleFirsts = Utils.allPossibleWords(_letters);
+        _metrics.anagramQuery(possibleFirsts.size());
         String bestFirst = "";
         int bestFirstScore = 0;
+        int checked = 0;
         for (String word : possibleFirsts) {
+            if ((++checked & (STOP_CHECK_INTERVAL - 1)) == 0 && solveStopped()) {
+                return;
+            }
             int score = Utils.wordScore(word);
             if (score > bestFirstScore) {
                 bestFirst = word;
@@ -169,7 +1002,8 @@ public class Player {
             }
         }
         _board.addWord(bestFirst);
-        useLetters(bestFirst, _letters);
+        _letters.useWord(bestFirst);
+        savePosition();
     }
 
     /**
@@ -181,25 +1015,35 @@ public class Player {
      * effective in searching for ideal boards, significantly reducing the amount of letter
      * combinations that result in unsolved boards.
      */
-    private int heuristic(BananaBoard board, HashMap<String, Integer> letters, boolean noMoves) {
-        if (noLettersLeft(letters)) {
+    private int heuristic(BananaBoard board, Rack letters, boolean noMoves) {
+        long start = System.nanoTime();
+        try {
+            return heuristicScore(board, letters, noMoves);
+        } finally {
+            _metrics.heuristicTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Helper method for heuristic that computes the score, which heuristic times. Reads the board's running
+     * score and the Rack's count of each letter, so it takes the same short time however big the board is, and
+     * allocates nothing.
+     */
+    private int heuristicScore(BananaBoard board, Rack letters, boolean noMoves) {
+        if (letters.isEmpty()) {
             return WIN_SCORE;
         }
-        if (noMoves && !noLettersLeft(letters)) {
+        if (noMoves && !letters.isEmpty()) {
             return -WIN_SCORE;
         }
-        HashSet<String> wordsOnBoard = board.getWords();
-        int result = 0;
-        for (String w : wordsOnBoard) {
-            result += board.wordFrequency(w) * Utils.wordScore(w);
-        }
-        result -= 20 * numLettersLeft(letters);
-        result -= 70 * letters.getOrDefault("z", 0);
-        result -= 70 * letters.getOrDefault("q", 0);
-        result -= 70 * letters.getOrDefault("x", 0);
-        int numLeft = numLettersLeft(letters);
-        for (String letter : letters.keySet()) {
-            double numTimes = letters.getOrDefault(letter, 0);
+        int result = board.score();
+        result -= 20 * letters.total();
+        int numLeft = letters.total();
+        for (char letter = 'A'; letter <= 'Z'; letter++) {
+            double numTimes = letters.count(letter);
+            if (numTimes == 0) {
+                continue;
+            }
             if (Utils.isVowel(letter)) {
                 if (numTimes / numLeft >= .4) {
                     result -= 60;
@@ -222,35 +1066,4 @@ public class Player {
         }
         return result;
     }
-
-    /**
-     * Given a Map of letter counts, returns whether there are no
-     * letters left in the Map.
-     */
-    private boolean noLettersLeft(HashMap<String, Integer> letters) {
-        return numLettersLeft(letters) == 0;
-    }
-
-    /**
-     * Given a Map of letter counts, returns the number of letters
-     * left in the Map.
-     */
-    private int numLettersLeft(HashMap<String, Integer> letters) {
-        int total = 0;
-        for (Integer val : letters.values()) {
-            total += val;
-        }
-        return total;
-    }
-
-    /**
-     * Given a String and a Map of letter counts, removes one of each letter
-     * in the word from the Map of letter counts.
-     */
-    private void useLetters(String word, HashMap<String, Integer> letters) {
-        for (int i = 0; i < word.length(); i++) {
-            String letter = word.substring(i, i + 1);
-            letters.put(letter, letters.get(letter) - 1);
-        }
-    }
 }
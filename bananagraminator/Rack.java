@@ -0,0 +1,239 @@
+import java.util.Arrays;
+
+/**
+ * A class representing a rack of letter tiles, as a count for each of the letters A through Z. Used
+ * throughout the program in place of a Map of letter counts, so that adding, removing and counting
+ * letters never boxes, hashes or allocates.
+ *
+ * @author Aryan Agrawal
+ */
+public class Rack {
+
+    /** The number of tiles of each letter, indexed from A.*/
+    private int[] _counts;
+    /** The total number of tiles in this Rack.*/
+    private int _total;
+    /** The Zobrist hash of this Rack's letter counts, kept up to date as tiles are added and removed.*/
+    private long _hash;
+
+    /**
+     * Default constructor, creates an empty Rack.
+     */
+    public Rack() {
+        _counts = new int[26];
+        _total = 0;
+    }
+
+    /**
+     * Copy constructor, creates a Rack with the same tiles as the given one.
+     * @param r The Rack to copy.
+     */
+    public Rack(Rack r) {
+        _counts = Arrays.copyOf(r._counts, 26);
+        _total = r._total;
+        _hash = r._hash;
+    }
+
+    /**
+     * Returns a new Rack holding the letters in the given String. Spaces and commas between tiles are optional,
+     * so "A B C", "a,b,c" and "abc" are the same rack. Throws a BananaException for anything else.
+     */
+    public static Rack of(String tiles) {
+        Rack letters = new Rack();
+        for (int i = 0; i < tiles.length(); i++) {
+            char c = tiles.charAt(i);
+            if (!Character.isWhitespace(c) && c != ',') {
+                letters.add(c);
+            }
+        }
+        return letters;
+    }
+
+    /**
+     * Adds one tile of the given letter to this Rack.
+     */
+    public void add(char c) {
+        int i = index(c);
+        _hash ^= Zobrist.letterCount((char) ('A' + i), _counts[i]);
+        _counts[i]++;
+        _total++;
+        _hash ^= Zobrist.letterCount((char) ('A' + i), _counts[i]);
+    }
+
+    /**
+     * Removes one tile of the given letter from this Rack. Throws a BananaException if there isn't one.
+     */
+    public void remove(char c) {
+        int i = index(c);
+        if (_counts[i] == 0) {
+            throw new BananaException("There is no " + c + " left to remove.");
+        }
+        _hash ^= Zobrist.letterCount((char) ('A' + i), _counts[i]);
+        _counts[i]--;
+        _total--;
+        _hash ^= Zobrist.letterCount((char) ('A' + i), _counts[i]);
+    }
+
+    /**
+     * Returns the number of tiles of the given letter in this Rack.
+     */
+    public int count(char c) {
+        return _counts[index(c)];
+    }
+
+    /**
+     * Returns the total number of tiles in this Rack.
+     */
+    public int total() {
+        return _total;
+    }
+
+    /**
+     * Returns whether there are no tiles left in this Rack.
+     */
+    public boolean isEmpty() {
+        return _total == 0;
+    }
+
+    /**
+     * Returns a bitmask with bit 0 set if this Rack has an A, bit 1 set if it has a B, and so on.
+     */
+    public int mask() {
+        int mask = 0;
+        for (int i = 0; i < 26; i++) {
+            if (_counts[i] > 0) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns whether the given word can be formed from the tiles in this Rack, that is, whether every
+     * letter appears in this Rack at least as many times as it appears in the word. Words with anything
+     * other than the uppercase letters A through Z can never be formed.
+     */
+    public boolean canForm(CharSequence word) {
+        if (word.length() > _total) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return false;
+            }
+            int needed = 1;
+            for (int j = 0; j < i; j++) {
+                if (word.charAt(j) == c) {
+                    needed++;
+                }
+            }
+            if (needed > _counts[c - 'A']) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes one tile of each letter in the given word from this Rack.
+     */
+    public void useWord(CharSequence word) {
+        for (int i = 0; i < word.length(); i++) {
+            remove(word.charAt(i));
+        }
+    }
+
+    /**
+     * Adds one tile of each letter in the given word to this Rack. Undoes useWord.
+     */
+    public void returnWord(CharSequence word) {
+        for (int i = 0; i < word.length(); i++) {
+            add(word.charAt(i));
+        }
+    }
+
+    /**
+     * Adds every tile in the given Rack to this one.
+     */
+    public void addAll(Rack r) {
+        for (int i = 0; i < 26; i++) {
+            _hash ^= Zobrist.letterCount((char) ('A' + i), _counts[i]);
+            _counts[i] += r._counts[i];
+            _hash ^= Zobrist.letterCount((char) ('A' + i), _counts[i]);
+        }
+        _total += r._total;
+    }
+
+    /**
+     * Removes every tile from this Rack.
+     */
+    public void clear() {
+        Arrays.fill(_counts, 0);
+        _total = 0;
+        _hash = 0;
+    }
+
+    /**
+     * Returns the Zobrist hash of this Rack's letter counts. Two Racks with the same tiles always have
+     * the same hash.
+     */
+    public long zobristHash() {
+        return _hash;
+    }
+
+    /**
+     * Returns a new array holding the number of tiles of each letter, indexed from A.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(_counts, 26);
+    }
+
+    /**
+     * Returns the index into _counts of the given letter, which may be upper or lower case. Throws a
+     * BananaException if the character isn't a letter.
+     */
+    private static int index(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c < 'A' || c > 'Z') {
+            throw new BananaException("Tiles must be letters, but got '" + c + "'.");
+        }
+        return c - 'A';
+    }
+
+    /**
+     * Two Racks are equal if they hold the same number of tiles of every letter.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Rack && Arrays.equals(_counts, ((Rack) obj)._counts);
+    }
+
+    /**
+     * Returns the hashCode for this Rack, based only on its letter counts.
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_counts);
+    }
+
+    /**
+     * Returns a String listing the tiles in this Rack in alphabetical order, separated by spaces, in the
+     * same format that Main accepts them.
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < 26; i++) {
+            for (int n = 0; n < _counts[i]; n++) {
+                if (result.length() > 0) {
+                    result.append(' ');
+                }
+                result.append((char) ('A' + i));
+            }
+        }
+        return result.toString();
+    }
+}
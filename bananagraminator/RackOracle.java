@@ -0,0 +1,127 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether every tile in a Rack could still be played, so that the search can give up on a game state
+ * that can never be finished without searching any further below it. Every Move plays one word through a
+ * single letter already on the board and takes the rest of its letters from hand, so a tile can only ever be
+ * played if some word in the dictionary holds it along with other tiles from the same Rack and one letter that
+ * is, or could come to be, on the board. The letters that could come to be on the board are the ones there
+ * already and the ones in hand. A Rack holding a tile that no such word holds, like a lone V, or a Q with no I
+ * in hand or on the board to play QI through, can never be emptied.
+ *
+ * This is only a necessary condition: it ignores where letters sit on the board, and lets every tile pick its
+ * own word, even though the tiles must in the end be split between words. So some Racks it passes still can't
+ * be finished, but it never rules out one that can. Each word is looked for by walking the Dawg with the Rack's
+ * tiles plus one letter from the board, skipping any part of the Dawg that can't reach the tile being checked.
+ * Answers are memoized by the Rack's letters and the board's letters, so asking again is a single lookup.
+ *
+ * @author Aryan Agrawal
+ */
+public class RackOracle {
+
+    /** The number of answers kept unless the constructor is given another.*/
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    /** Multiplier used to mix the board's letters into a Rack's hash to make a memo key.*/
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    /** The dictionary that words are looked for in.*/
+    private final Dawg _dawg;
+    /** The answers found so far, keyed by the Rack's Zobrist hash mixed with the board's letters.*/
+    private final ConcurrentHashMap<Long, Boolean> _answers;
+    /** The most answers kept at once. Once full, every answer is dropped and the memo starts again.*/
+    private final int _capacity;
+
+    /**
+     * Constructor that creates an oracle over the given dictionary, keeping at most the given number of answers.
+     * @param dawg The dictionary.
+     * @param capacity The most answers to keep at once. Must be positive.
+     */
+    public RackOracle(Dawg dawg, int capacity) {
+        if (capacity <= 0) {
+            throw new BananaException("A rack oracle must have room for at least one answer.");
+        }
+        _dawg = dawg;
+        _capacity = capacity;
+        _answers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns whether every tile in the given Rack could still be played on a board holding the given letters.
+     * Returns false only if some tile can never be played, whatever Moves are made. An empty Rack is always
+     * playable.
+     * @param letters The tiles in hand.
+     * @param boardLetters The letters on the board, as a bitmask like Rack.mask.
+     */
+    public boolean canPlayAll(Rack letters, int boardLetters) {
+        if (letters.isEmpty()) {
+            return true;
+        }
+        long key = letters.zobristHash() ^ boardLetters * MIX;
+        Boolean known = _answers.get(key);
+        if (known != null) {
+            return known;
+        }
+        int[] counts = letters.toArray();
+        int inHand = letters.mask();
+        int shared = boardLetters | inHand;
+        int covered = 0;
+        boolean answer = true;
+        for (int i = 0; i < 26 && answer; i++) {
+            if ((inHand & ~covered & (1 << i)) != 0) {
+                int found = findWord(_dawg.root(), counts, (char) ('A' + i), shared, false, false, 0, 0);
+                covered |= found;
+                answer = found != 0;
+            }
+        }
+        if (_answers.size() >= _capacity) {
+            _answers.clear();
+        }
+        _answers.put(key, answer);
+        return answer;
+    }
+
+    /**
+     * Helper method for canPlayAll that looks for a word, continuing from the given node, that holds the required
+     * letter as one of the tiles in counts, with every other letter either a tile from counts or, at most once,
+     * one of the shared letters. Returns a bitmask of the letters the word takes from counts, every one of which
+     * can be played by it, or 0 if there is no such word. Words of one letter don't count, since a Move always
+     * adds at least one tile to a letter on the board. The counts are used as scratch space, and are unchanged
+     * when this method returns.
+     * @param sharedUsed Whether the word so far already uses its letter from the board.
+     * @param hasRequired Whether the word so far already holds the required letter as a tile.
+     * @param length The number of letters in the word so far.
+     * @param used A bitmask of the letters the word so far takes from counts.
+     */
+    private int findWord(int node, int[] counts, char required, int shared, boolean sharedUsed,
+                         boolean hasRequired, int length, int used) {
+        if (hasRequired && length >= 2 && _dawg.isTerminal(node)) {
+            return used;
+        }
+        if (!hasRequired && !_dawg.reachesLetter(node, required)) {
+            return 0;
+        }
+        for (int e = _dawg.edgeStart(node); e < _dawg.edgeEnd(node); e++) {
+            char c = _dawg.edgeLabel(e);
+            int found = 0;
+            if (counts[c - 'A'] > 0) {
+                counts[c - 'A']--;
+                found = findWord(_dawg.edgeTarget(e), counts, required, shared, sharedUsed,
+                        hasRequired || c == required, length + 1, used | 1 << (c - 'A'));
+                counts[c - 'A']++;
+            } else if (!sharedUsed && (shared & 1 << (c - 'A')) != 0) {
+                found = findWord(_dawg.edgeTarget(e), counts, required, shared, true, hasRequired, length + 1, used);
+            }
+            if (found != 0) {
+                return found;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of answers currently memoized.
+     */
+    public int size() {
+        return _answers.size();
+    }
+}
@@ -0,0 +1,254 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers for the hot paths of a search: game tree nodes expanded, Moves generated and rejected,
+ * anagram queries and the words they return, board copies, and the time spent generating Moves, checking that
+ * words fit, and scoring boards. Each Player keeps one for its current solve, which its boards record into as
+ * well, and adds it to the process-wide one returned by global() when the solve ends. Boards that don't belong
+ * to a Player record straight into the global one.
+ *
+ * The counters are LongAdders, so the threads of a parallel search can all record into the same SearchMetrics
+ * without contending with each other. The times overlap: with the anagram engine, the time spent generating
+ * Moves includes the time spent checking them.
+ *
+ * Alongside the counters, each solve and each search for a Move is recorded as a JDK Flight Recorder event,
+ * bananagraminator.Solve and bananagraminator.MoveSearch, which cost nothing unless a recording is running.
+ *
+ * @author Aryan Agrawal
+ */
+public class SearchMetrics {
+
+    /** The metrics of every search in the process.*/
+    private static final SearchMetrics GLOBAL = new SearchMetrics();
+
+    /** The number of times a game tree node was expanded by findMove.*/
+    private final LongAdder _nodes = new LongAdder();
+    /** The number of legal Moves generated.*/
+    private final LongAdder _movesGenerated = new LongAdder();
+    /** The number of candidate Moves that were found not to fit on the board.*/
+    private final LongAdder _movesRejected = new LongAdder();
+    /** The number of calls made to Utils.allPossibleWords.*/
+    private final LongAdder _anagramQueries = new LongAdder();
+    /** The number of words those calls returned, each of which is then checked against the board.*/
+    private final LongAdder _wordsScanned = new LongAdder();
+    /** The number of copies made of a BananaBoard.*/
+    private final LongAdder _boardCopies = new LongAdder();
+    /** The nanoseconds spent generating Moves.*/
+    private final LongAdder _generationNanos = new LongAdder();
+    /** The nanoseconds spent checking whether words fit on the board.*/
+    private final LongAdder _validationNanos = new LongAdder();
+    /** The nanoseconds spent scoring boards with the heuristic.*/
+    private final LongAdder _heuristicNanos = new LongAdder();
+
+    /**
+     * Constructor for a SearchMetrics with every count and time at zero.
+     */
+    public SearchMetrics() {
+    }
+
+    /**
+     * Returns the metrics of every solve finished in this process so far, and of any boards that don't belong to
+     * a Player.
+     */
+    public static SearchMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Adds every count and time of the given SearchMetrics to this one.
+     */
+    public void add(SearchMetrics other) {
+        _nodes.add(other.nodesExpanded());
+        _movesGenerated.add(other.movesGenerated());
+        _movesRejected.add(other.movesRejected());
+        _anagramQueries.add(other.anagramQueries());
+        _wordsScanned.add(other.wordsScanned());
+        _boardCopies.add(other.boardCopies());
+        _generationNanos.add(other.generationNanos());
+        _validationNanos.add(other.validationNanos());
+        _heuristicNanos.add(other.heuristicNanos());
+    }
+
+    /** Records that findMove expanded a node.*/
+    void nodeExpanded() {
+        _nodes.increment();
+    }
+
+    /** Records that the given number of legal Moves were generated, taking the given number of nanoseconds.*/
+    void movesGenerated(int count, long nanos) {
+        _movesGenerated.add(count);
+        _generationNanos.add(nanos);
+    }
+
+    /** Records that a candidate Move was found not to fit on the board.*/
+    void moveRejected() {
+        _movesRejected.increment();
+    }
+
+    /** Records a call to Utils.allPossibleWords that returned the given number of words.*/
+    void anagramQuery(int words) {
+        _anagramQueries.increment();
+        _wordsScanned.add(words);
+    }
+
+    /** Records a copy of a BananaBoard.*/
+    void boardCopied() {
+        _boardCopies.increment();
+    }
+
+    /** Records the given number of nanoseconds spent checking whether a word fits on the board.*/
+    void validationTime(long nanos) {
+        _validationNanos.add(nanos);
+    }
+
+    /** Records the given number of nanoseconds spent scoring a board.*/
+    void heuristicTime(long nanos) {
+        _heuristicNanos.add(nanos);
+    }
+
+    /** Returns the number of game tree nodes expanded.*/
+    public long nodesExpanded() {
+        return _nodes.sum();
+    }
+
+    /** Returns the number of legal Moves generated.*/
+    public long movesGenerated() {
+        return _movesGenerated.sum();
+    }
+
+    /** Returns the number of candidate Moves found not to fit.*/
+    public long movesRejected() {
+        return _movesRejected.sum();
+    }
+
+    /** Returns the number of calls made to Utils.allPossibleWords.*/
+    public long anagramQueries() {
+        return _anagramQueries.sum();
+    }
+
+    /** Returns the number of words those calls returned.*/
+    public long wordsScanned() {
+        return _wordsScanned.sum();
+    }
+
+    /** Returns the number of board copies made.*/
+    public long boardCopies() {
+        return _boardCopies.sum();
+    }
+
+    /** Returns the nanoseconds spent generating Moves.*/
+    public long generationNanos() {
+        return _generationNanos.sum();
+    }
+
+    /** Returns the nanoseconds spent checking that words fit.*/
+    public long validationNanos() {
+        return _validationNanos.sum();
+    }
+
+    /** Returns the nanoseconds spent scoring boards.*/
+    public long heuristicNanos() {
+        return _heuristicNanos.sum();
+    }
+
+    /**
+     * Returns every count and time by name, in a fixed order, with the times in milliseconds.
+     */
+    public LinkedHashMap<String, Object> toMap() {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("nodesExpanded", nodesExpanded());
+        result.put("movesGenerated", movesGenerated());
+        result.put("movesRejected", movesRejected());
+        result.put("anagramQueries", anagramQueries());
+        result.put("wordsScanned", wordsScanned());
+        result.put("boardCopies", boardCopies());
+        result.put("generationMillis", generationNanos() / 1000000);
+        result.put("validationMillis", validationNanos() / 1000000);
+        result.put("heuristicMillis", heuristicNanos() / 1000000);
+        return result;
+    }
+
+    /**
+     * A toString method, returns the counts and times as a JSON object.
+     */
+    @Override
+    public String toString() {
+        return Json.object(toMap());
+    }
+
+    /**
+     * Flight Recorder event for a whole solve or peel by a Player, from its first word or Move to its last.
+     */
+    @Name("bananagraminator.Solve")
+    @Label("Solve")
+    @Category("Bananagraminator")
+    @Description("A Player solving a rack, or playing the tiles of a peel")
+    static final class SolveEvent extends Event {
+        @Label("Tiles")
+        int tiles;
+        @Label("Board Size")
+        int boardSize;
+        @Label("Solved")
+        boolean solved;
+        @Label("Nodes Expanded")
+        long nodesExpanded;
+        @Label("Moves Generated")
+        long movesGenerated;
+        @Label("Moves Rejected")
+        long movesRejected;
+        @Label("Anagram Queries")
+        long anagramQueries;
+        @Label("Words Scanned")
+        long wordsScanned;
+        @Label("Board Copies")
+        long boardCopies;
+        @Label("Move Generation Time")
+        @Timespan
+        long generationTime;
+        @Label("Validation Time")
+        @Timespan
+        long validationTime;
+        @Label("Heuristic Time")
+        @Timespan
+        long heuristicTime;
+
+        /**
+         * Fills in the counts and times from the given metrics.
+         */
+        void record(SearchMetrics metrics) {
+            nodesExpanded = metrics.nodesExpanded();
+            movesGenerated = metrics.movesGenerated();
+            movesRejected = metrics.movesRejected();
+            anagramQueries = metrics.anagramQueries();
+            wordsScanned = metrics.wordsScanned();
+            boardCopies = metrics.boardCopies();
+            generationTime = metrics.generationNanos();
+            validationTime = metrics.validationNanos();
+            heuristicTime = metrics.heuristicNanos();
+        }
+    }
+
+    /**
+     * Flight Recorder event for one search for the next Move of a solve.
+     */
+    @Name("bananagraminator.MoveSearch")
+    @Label("Move Search")
+    @Category("Bananagraminator")
+    @Description("A Player searching for its next Move")
+    static final class MoveSearchEvent extends Event {
+        @Label("Letters Left")
+        int lettersLeft;
+        @Label("Nodes Expanded")
+        long nodesExpanded;
+        @Label("Move Found")
+        String move;
+    }
+}
@@ -0,0 +1,23 @@
+import java.io.FileNotFoundException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A way of choosing a Player's next Move, which can be plugged into a Player with setStrategy in place of its
+ * built-in game tree. The Player still places the first word, makes each Move chosen, and records the solve's
+ * metrics; the strategy only decides what to play next.
+ *
+ * @author Aryan Agrawal
+ */
+public interface SearchStrategy {
+
+    /**
+     * Returns the Move to make next on the given board with the given letters in hand, or null if there is no
+     * legal Move. The board and letters are the Player's own copies, and may be changed while searching, but
+     * must be put back as they were before returning.
+     * @param board The board to play on, with no Moves applied.
+     * @param letters The letters in hand.
+     * @param stopped Returns true once the search must stop as soon as it can, because the solve was cancelled
+     *                or ran out of time. The best Move found so far should then be returned.
+     */
+    Move chooseMove(BananaBoard board, Rack letters, BooleanSupplier stopped) throws FileNotFoundException;
+}
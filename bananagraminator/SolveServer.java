@@ -0,0 +1,415 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small HTTP service that solves racks, built on the JDK's own HttpServer so the program still needs nothing
+ * else to run. The dictionary is loaded once when the server starts and shared by every request, and each
+ * request is solved by its own Player, so requests never see each other's state.
+ *
+ * POST /solve takes a JSON object like a line of BatchSolver's input: a "tiles" string and optionally an "id", a
+ * board "size" of at most BatchSolver.MAX_SIZE, which is 0 for a board with no preset size, a search "depth", a
+ * time "budget" for the search in milliseconds, which is 0 for none, a search "strategy", "tree" or "mcts", and
+ * the number of "playouts" a Monte Carlo search makes for each Move, along with a "timeout" in milliseconds. GET
+ * /solve takes the same as query parameters. Either answers with a JSON object like a line of BatchSolver's
+ * output. GET /health says whether the server is up, and GET /metrics reports its request counts, the anagram
+ * cache's hit rate, and the SearchMetrics of every solve so far.
+ *
+ * Requests are handled on virtual threads when the JDK has them, and on a pool of platform threads otherwise.
+ * At most a fixed number of solves run at once; requests beyond that are turned away with a 503 at once rather
+ * than queued. Each solve runs as a task of its own while its request waits for it, so a request whose timeout
+ * passes is answered with a 504 right then, and its solve is cancelled and left to stop in the background. The
+ * solve keeps its place among the solves running at once until it has stopped.
+ *
+ * @author Aryan Agrawal
+ */
+public class SolveServer {
+
+    /** The most a request may wait for its solve, in milliseconds, unless the server is started with another.*/
+    private static final long DEFAULT_TIMEOUT = 30000;
+    /** The query parameters of a GET request that are Strings rather than whole numbers.*/
+    private static final Set<String> STRING_PARAMETERS = Set.of("tiles", "id", "strategy");
+
+    /** The underlying HTTP server.*/
+    private final HttpServer _server;
+    /** The executor requests are handled on.*/
+    private final ExecutorService _requests;
+    /** The executor solves run on, apart from the requests waiting for them.*/
+    private final ExecutorService _solves;
+    /** Permits for the solves allowed to run at once.*/
+    private final Semaphore _solving;
+    /** The most solves allowed to run at once.*/
+    private final int _maxConcurrent;
+    /** The longest a request may wait for its solve, in milliseconds.*/
+    private final long _timeout;
+    /** The System.nanoTime() value when the server started.*/
+    private final long _started;
+    /** Counts of requests: every request to /solve, those solved, those that couldn't be, those turned away for
+     * lack of a free permit, and those that timed out.*/
+    private final AtomicLong _requested, _solved, _failed, _rejected, _timedOut;
+
+    /**
+     * Constructor that sets up, but doesn't start, a SolveServer on the given address.
+     * @param address The address and port to listen on.
+     * @param maxConcurrent The most solves to run at once.
+     * @param timeout The longest a request may wait for its solve, in milliseconds.
+     */
+    public SolveServer(InetSocketAddress address, int maxConcurrent, long timeout) throws IOException {
+        if (maxConcurrent < 1) {
+            throw new BananaException("A server needs to allow at least one solve at a time.");
+        }
+        if (timeout < 1) {
+            throw new BananaException("A server's timeout must be positive.");
+        }
+        _maxConcurrent = maxConcurrent;
+        _timeout = timeout;
+        _solving = new Semaphore(maxConcurrent);
+        _requested = new AtomicLong();
+        _solved = new AtomicLong();
+        _failed = new AtomicLong();
+        _rejected = new AtomicLong();
+        _timedOut = new AtomicLong();
+        _requests = newRequestExecutor();
+        _solves = newRequestExecutor();
+        _server = HttpServer.create(address, 0);
+        _server.setExecutor(_requests);
+        _server.createContext("/solve", this::handleSolve);
+        _server.createContext("/health", this::handleHealth);
+        _server.createContext("/metrics", this::handleMetrics);
+        _started = System.nanoTime();
+    }
+
+    /**
+     * Runner method for the server, called from Main with the arguments after --serve. Listens on the local
+     * machine only unless given another host.
+     *
+     * Format: java Main --serve [--host name] [--port n] [--max-concurrent n] [--timeout ms]
+     */
+    public static void main(String[] args) throws IOException {
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        int port = 8080;
+        int maxConcurrent = Runtime.getRuntime().availableProcessors();
+        long timeout = DEFAULT_TIMEOUT;
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                throw new BananaException("The option " + args[i] + " needs a value.");
+            }
+            switch (args[i]) {
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-concurrent":
+                    maxConcurrent = Integer.parseInt(args[++i]);
+                    break;
+                case "--timeout":
+                    timeout = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new BananaException("Unknown option " + args[i] + ".");
+            }
+        }
+        SolveServer server = new SolveServer(new InetSocketAddress(host, port), maxConcurrent, timeout);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.err.println("Solving racks at http://" + host + ":" + server.getPort() + "/solve");
+    }
+
+    /**
+     * Loads the dictionary and everything built from it, so that no request pays for it, then starts serving.
+     */
+    public void start() throws FileNotFoundException {
+        Utils.isWord("");
+        Utils.getDawg();
+        Utils.allPossibleWords(new Rack());
+        _server.start();
+    }
+
+    /**
+     * Stops serving, waiting up to the given number of seconds for requests in progress to finish.
+     */
+    public void stop(int delaySeconds) {
+        _server.stop(delaySeconds);
+        _requests.shutdown();
+        _solves.shutdown();
+    }
+
+    /**
+     * Returns the port the server listens on, which is useful when it was started on port 0.
+     */
+    public int getPort() {
+        return _server.getAddress().getPort();
+    }
+
+    /**
+     * Returns an executor that runs each task on a new virtual thread, or, on a JDK without virtual threads,
+     * one that runs them on a growing pool of platform threads. The JDK's method is found reflectively, since
+     * the program is built to run on JDKs that don't have it.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "solve-request");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Handles a request to /solve.
+     */
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            _requested.incrementAndGet();
+            Map<String, Object> request;
+            try {
+                request = readRequest(exchange);
+            } catch (BananaException e) {
+                _failed.incrementAndGet();
+                respond(exchange, 400, error(e.getMessage()));
+                return;
+            }
+            if (request == null) {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                respond(exchange, 405, error("Use GET or POST to solve a rack."));
+                return;
+            }
+            if (!_solving.tryAcquire()) {
+                _rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, error("The server is busy. It solves " + _maxConcurrent + " racks at most."));
+                return;
+            }
+            solve(exchange, request);
+        }
+    }
+
+    /**
+     * Helper method for handleSolve that solves the given request and answers it. Takes over the permit that
+     * handleSolve acquired, and releases it once the solve has finished or stopped, which for a solve that timed
+     * out may be after the request has been answered.
+     */
+    private void solve(HttpExchange exchange, Map<String, Object> request) throws IOException {
+        long start = System.nanoTime();
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        Player player;
+        long timeout;
+        Future<BananaBoard> solving = null;
+        try {
+            try {
+                if (!(request.get("tiles") instanceof String)) {
+                    throw new BananaException("A request needs a \"tiles\" string.");
+                }
+                if (request.get("id") != null) {
+                    result.put("id", request.get("id").toString());
+                }
+                Rack letters = Rack.of((String) request.get("tiles"));
+                if (letters.isEmpty()) {
+                    throw new BananaException("The rack has no tiles.");
+                }
+                int size = (int) longMember(request, "size", BatchSolver.boardSizeFor(letters.total()), 0,
+                        BatchSolver.MAX_SIZE);
+                timeout = Math.min(longMember(request, "timeout", _timeout, 1, Integer.MAX_VALUE), _timeout);
+                result.put("tiles", letters.total());
+                result.put("size", size);
+                player = new Player(letters, size);
+                player.setSearchDepth((int) longMember(request, "depth", 1, 1, Integer.MAX_VALUE));
+                player.setTimeBudget(0, longMember(request, "budget", 0, 0, BatchSolver.MAX_BUDGET));
+                int playouts = (int) longMember(request, "playouts", MonteCarloSearch.DEFAULT_PLAYOUTS, 1,
+                        Integer.MAX_VALUE);
+                if (request.get("strategy") != null) {
+                    String strategy = request.get("strategy").toString();
+                    BatchSolver.checkStrategy(strategy);
+                    if (strategy.equals("mcts")) {
+                        player.setStrategy(new MonteCarloSearch(1, playouts, 0, MonteCarloSearch.Playout.GREEDY, 0));
+                    }
+                }
+            } catch (RuntimeException e) {
+                _failed.incrementAndGet();
+                respond(exchange, 400, error(e.getMessage()));
+                return;
+            }
+            try {
+                solving = _solves.submit(() -> {
+                    try {
+                        return player.solve();
+                    } finally {
+                        _solving.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                respond(exchange, 503, error("The server is stopping."));
+                return;
+            }
+        } finally {
+            if (solving == null) {
+                _solving.release();
+            }
+        }
+        int status;
+        try {
+            long waited = System.nanoTime() - start;
+            BananaBoard board = solving.get(Math.max(0, timeout * 1000000 - waited), TimeUnit.NANOSECONDS);
+            result.put("ok", true);
+            result.put("board", board.rows());
+            status = 200;
+            _solved.incrementAndGet();
+        } catch (TimeoutException e) {
+            player.cancel();
+            result.put("ok", false);
+            result.put("error", "The solve took longer than " + timeout + " ms.");
+            status = 504;
+            _timedOut.incrementAndGet();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            result.put("ok", false);
+            result.put("error", cause.getMessage() == null ? cause.toString() : cause.getMessage());
+            status = cause instanceof BananaException ? 422 : 500;
+            _failed.incrementAndGet();
+        } catch (InterruptedException e) {
+            player.cancel();
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, error("The server is stopping."));
+            return;
+        }
+        result.put("metrics", player.getMetrics().toMap());
+        result.put("millis", (System.nanoTime() - start) / 1000000);
+        respond(exchange, status, Json.object(result));
+    }
+
+    /**
+     * Handles a request to /health.
+     */
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+            result.put("status", "ok");
+            result.put("available", _solving.availablePermits());
+            respond(exchange, 200, Json.object(result));
+        }
+    }
+
+    /**
+     * Handles a request to /metrics.
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            AnagramCache cache = Utils.getAnagramCache();
+            LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+            result.put("uptimeMillis", (System.nanoTime() - _started) / 1000000);
+            result.put("requests", _requested.get());
+            result.put("solved", _solved.get());
+            result.put("failed", _failed.get());
+            result.put("rejected", _rejected.get());
+            result.put("timedOut", _timedOut.get());
+            result.put("solving", _maxConcurrent - _solving.availablePermits());
+            result.put("maxConcurrent", _maxConcurrent);
+            result.put("anagramCacheHits", cache == null ? 0 : cache.hits());
+            result.put("anagramCacheMisses", cache == null ? 0 : cache.misses());
+            result.put("search", SearchMetrics.global().toMap());
+            respond(exchange, 200, Json.object(result));
+        }
+    }
+
+    /**
+     * Returns the members of a request to /solve, from its JSON body if it was POSTed or its query parameters
+     * if it was a GET, or null for any other method. Query parameters named in STRING_PARAMETERS are kept as
+     * Strings, and the rest must be whole numbers. Throws a BananaException if they can't be read.
+     */
+    private static Map<String, Object> readRequest(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (method.equals("POST")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                return Json.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8).trim());
+            }
+        } else if (!method.equals("GET")) {
+            return null;
+        }
+        LinkedHashMap<String, Object> members = new LinkedHashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return members;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals == -1) {
+                continue;
+            }
+            String name = URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8);
+            String value = URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            if (STRING_PARAMETERS.contains(name)) {
+                members.put(name, value);
+            } else {
+                try {
+                    members.put(name, Long.parseLong(value));
+                } catch (NumberFormatException e) {
+                    throw new BananaException("The \"" + name + "\" of a request must be a whole number.");
+                }
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Returns the whole number member of the given request with the given name, or the given default if it is
+     * missing. Throws a BananaException if it isn't a whole number from min to max.
+     */
+    private static long longMember(Map<String, Object> request, String name, long otherwise, long min, long max) {
+        Object value = request.get(name);
+        if (value == null) {
+            return otherwise;
+        }
+        if (!(value instanceof Long) || (Long) value < min || (Long) value > max) {
+            throw new BananaException("The \"" + name + "\" of a request must be a whole number from " + min
+                    + " to " + max + ".");
+        }
+        return (Long) value;
+    }
+
+    /**
+     * Returns a JSON object holding the given error.
+     */
+    private static String error(String message) {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("ok", false);
+        result.put("error", message);
+        return Json.object(result);
+    }
+
+    /**
+     * Sends the given JSON as the response to the given exchange, with the given status code.
+     */
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A fixed size table of previously searched game states, keyed by their Zobrist hash, used by the
+ * game tree in the Player class to avoid searching the same board and letters again when different
+ * orders of Moves lead to them. Each state stores the depth it was searched to, the score found, and
+ * the best Move found.
+ *
+ * The table is split into buckets of two slots. The first slot of a bucket keeps whichever state was
+ * searched deepest, since that one saved the most work, and the second slot always takes the most
+ * recent state that didn't fit in the first. Entries are immutable and are swapped in whole, so the
+ * table can be shared by searches running on several threads without locking.
+ *
+ * @author Aryan Agrawal
+ */
+public class TranspositionTable {
+
+    /** The slots of the table. Slots 2 * i and 2 * i + 1 make up bucket i.*/
+    private Entry[] _slots;
+    /** One less than the number of buckets, which is always a power of two.*/
+    private int _mask;
+
+    /**
+     * Constructor that creates an empty table with room for at least the given number of states.
+     */
+    public TranspositionTable(int capacity) {
+        int buckets = Integer.highestOneBit(Math.max(capacity / 2, 1));
+        if (buckets * 2 < capacity) {
+            buckets *= 2;
+        }
+        _slots = new Entry[buckets * 2];
+        _mask = buckets - 1;
+    }
+
+    /**
+     * Returns the stored entry for the state with the given hash, or null if there isn't one.
+     */
+    public Entry get(long key) {
+        int bucket = bucket(key);
+        Entry first = _slots[bucket];
+        if (first != null && first._key == key) {
+            return first;
+        }
+        Entry second = _slots[bucket + 1];
+        if (second != null && second._key == key) {
+            return second;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the result of searching the state with the given hash to the given depth.
+     * @param key The Zobrist hash of the state.
+     * @param depth The depth the state was searched to.
+     * @param score The score the search found.
+     * @param bestMove The best Move the search found, or null if there were none.
+     */
+    public void put(long key, int depth, int score, Move bestMove) {
+        int bucket = bucket(key);
+        Entry entry = new Entry(key, depth, score, bestMove);
+        Entry first = _slots[bucket];
+        if (first == null || first._key == key || depth >= first._depth) {
+            _slots[bucket] = entry;
+        } else {
+            _slots[bucket + 1] = entry;
+        }
+    }
+
+    /**
+     * Removes every entry from the table.
+     */
+    public void clear() {
+        Arrays.fill(_slots, null);
+    }
+
+    /**
+     * Returns the maximum number of states this table can hold.
+     */
+    public int capacity() {
+        return _slots.length;
+    }
+
+    /**
+     * Writes the size of the table and every entry in it, with the slot it is in, to the given output, for a
+     * Checkpoint. Can be called while other threads search with the table, in which case each entry written is
+     * whole, but entries stored while it runs may or may not be written.
+     */
+    void write(DataOutputStream out) throws IOException {
+        Entry[] slots = _slots.clone();
+        int count = 0;
+        for (Entry entry : slots) {
+            if (entry != null) {
+                count++;
+            }
+        }
+        out.writeInt(slots.length);
+        out.writeInt(count);
+        for (int i = 0; i < slots.length; i++) {
+            Entry entry = slots[i];
+            if (entry != null) {
+                out.writeInt(i);
+                out.writeLong(entry._key);
+                out.writeInt(entry._depth);
+                out.writeInt(entry._score);
+                Checkpoint.writeMove(out, entry._bestMove);
+            }
+        }
+    }
+
+    /**
+     * Returns a table of the same size and with the same entries, in the same slots, as the one written to the
+     * given input by write. Throws a BananaException if the size, the number of entries or a slot couldn't have
+     * been written by write.
+     */
+    static TranspositionTable read(DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        int count = in.readInt();
+        if (capacity < 2 || Integer.bitCount(capacity) != 1 || count < 0 || count > capacity) {
+            throw new BananaException("The checkpoint is damaged.");
+        }
+        TranspositionTable table = new TranspositionTable(capacity);
+        for (; count > 0; count--) {
+            int slot = in.readInt();
+            if (slot < 0 || slot >= capacity) {
+                throw new BananaException("The checkpoint is damaged.");
+            }
+            long key = in.readLong();
+            int depth = in.readInt();
+            int score = in.readInt();
+            table._slots[slot] = new Entry(key, depth, score, Checkpoint.readMove(in));
+        }
+        return table;
+    }
+
+    /**
+     * Returns the index of the first slot of the bucket for the given hash.
+     */
+    private int bucket(long key) {
+        return (int) ((key ^ (key >>> 32)) & _mask) * 2;
+    }
+
+    /**
+     * Class representing one stored state. Immutable, so that it can be read safely by other threads.
+     */
+    public static class Entry {
+        /** The Zobrist hash of the state.*/
+        private final long _key;
+        /** The depth the state was searched to.*/
+        private final int _depth;
+        /** The score the search found.*/
+        private final int _score;
+        /** The best Move the search found, or null if there were none.*/
+        private final Move _bestMove;
+
+        /**
+         * Constructor that accepts one argument for each instance variable and assigns them accordingly.
+         */
+        private Entry(long key, int depth, int score, Move bestMove) {
+            _key = key;
+            _depth = depth;
+            _score = score;
+            _bestMove = bestMove;
+        }
+
+        /**
+         * Getter method, returns the depth the state was searched to.
+         */
+        public int getDepth() {
+            return _depth;
+        }
+
+        /**
+         * Getter method, returns the score the search found.
+         */
+        public int getScore() {
+            return _score;
+        }
+
+        /**
+         * Getter method, returns the best Move the search found, or null if there were none.
+         */
+        public Move getBestMove() {
+            return _bestMove;
+        }
+    }
+}
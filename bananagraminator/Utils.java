@@ -1,8 +1,11 @@
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Scanner;
+import java.util.Set;
 
 /**
  * A Utils class that provides helpful methods used throughout the program, such
@@ -22,14 +25,37 @@ import java.util.Scanner;
 public class Utils {
 
     /** A Set of all legal words, initialized by adding all words from a file of valid words.*/
-    private static HashSet<String> _words;
-    /** A Map of all individual letters to "letter scores", used for determining Board heuristic values.*/
-    private static HashMap<String, Integer> _letterScores;
+    private static volatile HashSet<String> _words;
+    /** The "letter score" of each letter, indexed from A, used for determining Board heuristic values.*/
+    private static final int[] LETTER_SCORES = initializeLetterScores();
+    /** The highest score of any single letter.*/
+    private static final int MAX_LETTER_SCORE = Arrays.stream(LETTER_SCORES).max().getAsInt();
+    /** Whether each letter, indexed from A, is a vowel.*/
+    private static final boolean[] VOWELS = initializeVowels();
+    /** A WordPostings index over the full word list, used to answer anagram queries against it. Read from the
+     * dictionary snapshot if there is one, so that _words is never needed, and built over _words otherwise.*/
+    private static volatile WordPostings _index;
+    /** A Dawg compiled from _words, used to generate moves by walking outward from letters on the board.*/
+    private static volatile Dawg _dawg;
+    /** A RackOracle over _dawg, shared by every Player so that each Rack's answer is only ever worked out once.*/
+    private static volatile RackOracle _oracle;
+    /** The memory-mapped dictionary snapshot, or null if there isn't one and the text word list is used instead.*/
+    private static volatile Dictionary _dictionary;
+    /** Whether the program has looked for a dictionary snapshot yet.*/
+    private static volatile boolean _dictionaryChecked;
+    /** The number of anagram query results kept in _cache unless changed by setAnagramCacheSize.*/
+    private static final int DEFAULT_CACHE_SIZE = 4096;
+    /** A cache of anagram query results against the full word list, or null if caching is turned off.*/
+    private static volatile AnagramCache _cache = new AnagramCache(DEFAULT_CACHE_SIZE);
 
     /**
      * Given a String s, returns whether s is a valid word.
      */
     public static boolean isWord(String s) throws FileNotFoundException {
+        Dictionary dictionary = getDictionary();
+        if (dictionary != null) {
+            return dictionary.contains(s);
+        }
         if (_words == null) {
             initializeWordSet();
         }
@@ -38,34 +64,142 @@ public class Utils {
 
     /**
      * Helper method used to put all valid words in _words from a file, called only once per program
-     * execution.
+     * execution. Like the other initialize methods, it is synchronized and only publishes the finished
+     * Set, so that searches running on several threads can share it safely. Takes the words from the dictionary
+     * snapshot if there is one, and otherwise reads good-words.txt from the working directory. With a snapshot,
+     * word lookups and anagram queries never need _words, so it is only built for getWordList.
      */
-    private static void initializeWordSet() throws FileNotFoundException {
-        _words = new HashSet<>();
+    private static synchronized void initializeWordSet() throws FileNotFoundException {
+        if (_words != null) {
+            return;
+        }
+        Dictionary dictionary = getDictionary();
+        if (dictionary != null) {
+            _words = dictionary.toWordSet();
+            return;
+        }
+        HashSet<String> words = new HashSet<>();
         File wordFile = new File("good-words.txt");
         Scanner wordScan = new Scanner(wordFile);
         while (wordScan.hasNextLine()) {
             String word = wordScan.nextLine();
-            _words.add(word);
+            words.add(word);
+        }
+        _words = words;
+    }
+
+    /**
+     * Returns the dictionary snapshot, loading it the first time it is needed, or null if there isn't one. See
+     * Dictionary.load for where it is looked for.
+     */
+    public static Dictionary getDictionary() throws FileNotFoundException {
+        if (!_dictionaryChecked) {
+            initializeDictionary();
         }
+        return _dictionary;
     }
 
     /**
-     * Given a Map of letter counts, returns a Set of all possible words that can be formed from those letters.
+     * Helper method used to load _dictionary, called only once per program execution. Throws a BananaException
+     * if the snapshot is there but can't be read.
      */
-    public static HashSet<String> allPossibleWords(HashMap<String, Integer> letters) throws FileNotFoundException {
+    private static synchronized void initializeDictionary() throws FileNotFoundException {
+        if (_dictionaryChecked) {
+            return;
+        }
+        try {
+            _dictionary = Dictionary.load();
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new BananaException("Couldn't read the dictionary snapshot: " + e.getMessage());
+        }
+        _dictionaryChecked = true;
+    }
+
+    /**
+     * Helper method used to build _index, called only once per program execution. Takes the index stored in the
+     * dictionary snapshot if there is one, which makes no String for a word until a query returns it, and otherwise
+     * builds one over _words.
+     */
+    private static synchronized void initializeIndex() throws FileNotFoundException {
+        if (_index != null) {
+            return;
+        }
+        Dictionary dictionary = getDictionary();
+        if (dictionary != null) {
+            _index = dictionary.getPostings();
+            return;
+        }
         if (_words == null) {
             initializeWordSet();
         }
-        return allPossibleWords(letters, _words);
+        _index = new WordPostings(_words);
     }
 
+    /**
+     * Returns the Dawg of all valid words, compiling it the first time it is needed.
+     */
+    public static Dawg getDawg() throws FileNotFoundException {
+        if (_dawg == null) {
+            initializeDawg();
+        }
+        return _dawg;
+    }
 
     /**
-     * Given a Map of letter counts and a Set of valid words, returns a Set of all possible words in the words Set that
-     * can be formed from those letters.
+     * Helper method used to compile _dawg from _words, called only once per program execution. The dictionary
+     * snapshot already holds a compiled Dawg, so if there is one it is used instead.
      */
-    public static HashSet<String> allPossibleWords(HashMap<String, Integer> letters, HashSet<String> words) throws FileNotFoundException {
+    private static synchronized void initializeDawg() throws FileNotFoundException {
+        if (_dawg != null) {
+            return;
+        }
+        Dictionary dictionary = getDictionary();
+        if (dictionary != null) {
+            _dawg = dictionary.getDawg();
+            return;
+        }
+        if (_words == null) {
+            initializeWordSet();
+        }
+        _dawg = new Dawg(_words);
+    }
+
+    /**
+     * Returns the RackOracle over the full word list, creating it the first time it is needed.
+     */
+    public static RackOracle getRackOracle() throws FileNotFoundException {
+        if (_oracle == null) {
+            initializeOracle();
+        }
+        return _oracle;
+    }
+
+    /**
+     * Helper method used to create _oracle, called only once per program execution.
+     */
+    private static synchronized void initializeOracle() throws FileNotFoundException {
+        if (_oracle != null) {
+            return;
+        }
+        _oracle = new RackOracle(getDawg(), RackOracle.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Given a Rack of letters, returns a Set of all possible words that can be formed from those letters. The Set
+     * can't be modified.
+     */
+    public static Set<String> allPossibleWords(Rack letters) throws FileNotFoundException {
+        return allPossibleWords(letters, (char) 0);
+    }
+
+
+    /**
+     * Given a Rack of letters and a Set of valid words, returns a Set of all possible words in the words Set that
+     * can be formed from those letters. The Set can't be modified.
+     */
+    public static Set<String> allPossibleWords(Rack letters, HashSet<String> words) throws FileNotFoundException {
         if (_words == null) {
             initializeWordSet();
         }
@@ -73,14 +207,33 @@ public class Utils {
     }
 
     /**
-     * Given a Map of letters, a Set of valid words, and a Set of letters that are required to be in the words, returns
+     * Given a Rack of letters, a Set of valid words, and a Set of letters that are required to be in the words, returns
      * a Set of all possible words in the words Set that can be formed from the given letters, ensuring that all the
-     * words returned contain all the letters in the given Set of required letters.
+     * words returned contain all the letters in the given Set of required letters. Queries against the full word
+     * list are answered by _index rather than by scanning every word, and if there is at most one required letter,
+     * are cached, so the Set returned for those queries is shared between threads. Every Set returned is therefore
+     * unmodifiable.
      */
-    public static HashSet<String> allPossibleWords(HashMap<String, Integer> letters, HashSet<String> words, HashSet<String> requiredLetters) throws FileNotFoundException {
+    public static Set<String> allPossibleWords(Rack letters, HashSet<String> words, HashSet<String> requiredLetters) throws FileNotFoundException {
         if (_words == null) {
             initializeWordSet();
         }
+        if (words == _words && WordPostings.supports(requiredLetters)) {
+            if (_index == null) {
+                initializeIndex();
+            }
+            AnagramCache cache = _cache;
+            if (cache == null || requiredLetters.size() > 1) {
+                return Collections.unmodifiableSet(_index.anagrams(letters, requiredLetters));
+            }
+            char required = requiredLetters.isEmpty() ? 0 : requiredLetters.iterator().next().charAt(0);
+            Set<String> anagrams = cache.get(letters, required);
+            if (anagrams == null) {
+                anagrams = Collections.unmodifiableSet(_index.anagrams(letters, requiredLetters));
+                cache.put(letters, required, anagrams);
+            }
+            return anagrams;
+        }
         HashSet<String> anagrams = new HashSet<>();
         for (String w : words) {
             boolean lacksRequired = false;
@@ -92,90 +245,154 @@ public class Utils {
             if (lacksRequired) {
                 continue;
             }
-            HashMap<String, Integer> copy = new HashMap<>(letters);
-            boolean possible = true;
-            for (int i = 0; i < w.length(); i++) {
-                String letter = w.substring(i, i + 1);
-                if (!copy.containsKey(letter) || copy.get(letter) == 0) {
-                    possible = false;
-                    break;
-                } else {
-                    copy.put(letter, copy.get(letter) - 1);
-                }
-            }
-            if (possible) {
+            if (letters.canForm(w)) {
                 anagrams.add(w);
             }
         }
+        return Collections.unmodifiableSet(anagrams);
+    }
+
+    /**
+     * Given a Rack of letters and a letter that every word must contain, returns a Set of all valid words that can
+     * be formed from those letters and that contain the required letter. A required letter of 0 requires none.
+     * Answers the same query as the method above does for the full word list and a Set holding just the required
+     * letter, but without building that Set, so BananaBoard.legalMoves can ask it once per anchor. The result is
+     * cached in the same way, and the Set returned is likewise unmodifiable.
+     */
+    public static Set<String> allPossibleWords(Rack letters, char required) throws FileNotFoundException {
+        if (_index == null) {
+            initializeIndex();
+        }
+        AnagramCache cache = _cache;
+        if (cache == null) {
+            return Collections.unmodifiableSet(_index.anagrams(letters, required));
+        }
+        Set<String> anagrams = cache.get(letters, required);
+        if (anagrams == null) {
+            anagrams = Collections.unmodifiableSet(_index.anagrams(letters, required));
+            cache.put(letters, required, anagrams);
+        }
         return anagrams;
     }
 
+    /**
+     * Returns the cache of anagram query results, or null if caching is turned off.
+     */
+    public static AnagramCache getAnagramCache() {
+        return _cache;
+    }
+
+    /**
+     * Replaces the cache of anagram query results with an empty one holding at most the given number of
+     * results. A size of 0 turns caching off.
+     */
+    public static void setAnagramCacheSize(int size) {
+        if (size < 0) {
+            throw new BananaException("The anagram cache size can't be negative.");
+        }
+        _cache = size > 0 ? new AnagramCache(size) : null;
+    }
+
     /**
      * Returns the score for a given word, based off the scores of each individual letter in the word.
      */
     public static int wordScore(String s) {
-        if (_letterScores == null) {
-            initializeLetterScores();
-        }
         int score = 0;
         for (int i = 0; i < s.length(); i++) {
-            String letter = s.substring(i, i + 1);
-            score += _letterScores.getOrDefault(letter, 0);
+            score += letterScore(s.charAt(i));
         }
         return score;
     }
 
     /**
-     * Returns the Set of all valid words.
+     * Returns the score for a single letter, as used by wordScore. Returns 0 for anything that isn't an
+     * uppercase letter.
      */
-    public static HashSet<String> getWordList() {
+    public static int letterScore(char c) {
+        if (c < 'A' || c > 'Z') {
+            return 0;
+        }
+        return LETTER_SCORES[c - 'A'];
+    }
+
+    /**
+     * Returns the highest score of any single letter.
+     */
+    public static int maxLetterScore() {
+        return MAX_LETTER_SCORE;
+    }
+
+    /**
+     * Returns the Set of all valid words. With a dictionary snapshot, the Set is built the first time it is asked
+     * for, making a String of every word, so the solver itself never asks for it.
+     */
+    public static HashSet<String> getWordList() throws FileNotFoundException {
+        if (_words == null) {
+            initializeWordSet();
+        }
         return _words;
     }
 
     /**
-     * Called as a helper method to initialize all the scores for each individual
-     * letter. Called only once during the execution of the program.
-     */
-    private static void initializeLetterScores() {
-        _letterScores = new HashMap<>();
-        _letterScores.put("E", 150);
-        _letterScores.put("T", 100);
-        _letterScores.put("A", 140);
-        _letterScores.put("O", 140);
-        _letterScores.put("I", 135);
-        _letterScores.put("N", 120);
-        _letterScores.put("S", 120);
-        _letterScores.put("H", 400);
-        _letterScores.put("R", 130);
-        _letterScores.put("D", 200);
-        _letterScores.put("L", 110);
-        _letterScores.put("C", 300);
-        _letterScores.put("U", 120);
-        _letterScores.put("M", 300);
-        _letterScores.put("W", 400);
-        _letterScores.put("F", 400);
-        _letterScores.put("G", 200);
-        _letterScores.put("Y", 400);
-        _letterScores.put("P", 300);
-        _letterScores.put("B", 300);
-        _letterScores.put("V", 400);
-        _letterScores.put("K", 500);
-        _letterScores.put("J", 800);
-        _letterScores.put("X", 800);
-        _letterScores.put("Q", 1000);
-        _letterScores.put("Z", 1000);
+     * Called as a helper method to build the table of scores for each individual letter, indexed from A.
+     * Called only once, when the class is loaded.
+     */
+    private static int[] initializeLetterScores() {
+        int[] scores = new int[26];
+        scores['E' - 'A'] = 150;
+        scores['T' - 'A'] = 100;
+        scores['A' - 'A'] = 140;
+        scores['O' - 'A'] = 140;
+        scores['I' - 'A'] = 135;
+        scores['N' - 'A'] = 120;
+        scores['S' - 'A'] = 120;
+        scores['H' - 'A'] = 400;
+        scores['R' - 'A'] = 130;
+        scores['D' - 'A'] = 200;
+        scores['L' - 'A'] = 110;
+        scores['C' - 'A'] = 300;
+        scores['U' - 'A'] = 120;
+        scores['M' - 'A'] = 300;
+        scores['W' - 'A'] = 400;
+        scores['F' - 'A'] = 400;
+        scores['G' - 'A'] = 200;
+        scores['Y' - 'A'] = 400;
+        scores['P' - 'A'] = 300;
+        scores['B' - 'A'] = 300;
+        scores['V' - 'A'] = 400;
+        scores['K' - 'A'] = 500;
+        scores['J' - 'A'] = 800;
+        scores['X' - 'A'] = 800;
+        scores['Q' - 'A'] = 1000;
+        scores['Z' - 'A'] = 1000;
+        return scores;
+    }
+
+    /**
+     * Called as a helper method to build the table of which letters are vowels, indexed from A. Called only
+     * once, when the class is loaded.
+     */
+    private static boolean[] initializeVowels() {
+        boolean[] vowels = new boolean[26];
+        for (char c : "AEIOU".toCharArray()) {
+            vowels[c - 'A'] = true;
+        }
+        return vowels;
+    }
+
+    /**
+     * Returns whether or not the given letter is a vowel. Accepts upper or lower case letters.
+     */
+    public static boolean isVowel(char c) {
+        char upper = Character.toUpperCase(c);
+        return upper >= 'A' && upper <= 'Z' && VOWELS[upper - 'A'];
     }
 
     /**
      * Returns whether or not the given String is a vowel.
      */
     public static boolean isVowel(String s) {
-        HashSet<String> vowels = new HashSet<>();
-        vowels.add("A");
-        vowels.add("E");
-        vowels.add("I");
-        vowels.add("O");
-        vowels.add("U");
-        return vowels.contains(s.trim().toUpperCase());
+        String trimmed = s.trim();
+        return trimmed.length() == 1 && isVowel(trimmed.charAt(0));
     }
 }
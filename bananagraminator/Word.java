@@ -50,7 +50,10 @@ public class Word {
      * a BananaBoard.
      */
     public boolean equals(Object obj) {
-        return _word == ((Word) obj).getWord() && _num == ((Word) obj).getNum();
+        if (!(obj instanceof Word)) {
+            return false;
+        }
+        return _word.equals(((Word) obj).getWord()) && _num == ((Word) obj).getNum();
     }
 
     /**
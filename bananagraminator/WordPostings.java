@@ -0,0 +1,270 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * An index over a collection of words that answers anagram queries with bitwise operations. Every word gets
+ * an integer id, and every letter gets one bitset over the word ids for each count of that letter, so that bit
+ * i of the bitset for E and 2 is set when word i contains at least two Es. The words that can be formed from a
+ * Rack are then exactly the words not in the bitset for any letter and one more than the Rack has of it, and
+ * requiring a letter is one more AND with its bitset for 1. A query is a few dozen passes of AND and ANDNOT over
+ * long arrays, after which every bit still set is an answer.
+ *
+ * The dictionary snapshot holds a WordPostings over its words, written by writeTo, which Dictionary reads back
+ * with readFrom. That index uses the snapshot's word ids, so loading it makes no Strings at all, and a query only
+ * turns the words it returns into Strings.
+ *
+ * @author Aryan Agrawal
+ */
+public class WordPostings {
+
+    /** The indexed words, by id, or null if they are read from _dictionary instead.*/
+    private String[] _words;
+    /** The Dictionary whose word ids this index uses, or null if the words are in _words instead.*/
+    private Dictionary _dictionary;
+    /** For each letter and each count from 1 up to the most of that letter in any word, the bitset of the
+     * words with at least that many of that letter. Index 0 of each letter holds every word.*/
+    private long[][][] _postings;
+    /** The number of longs in each bitset.*/
+    private int _numLongs;
+
+    /**
+     * Constructor that builds the index from the given collection of words, giving them ids in iteration order.
+     * Words containing anything other than the uppercase letters A through Z can never be formed from a Rack, so
+     * they are left out.
+     * @param words The words to index.
+     */
+    public WordPostings(Collection<String> words) {
+        ArrayList<String> valid = new ArrayList<>();
+        int[] maxCount = new int[26];
+        int[] counts = new int[26];
+        for (String w : words) {
+            if (!countLetters(w, counts)) {
+                continue;
+            }
+            valid.add(w);
+            for (int letter = 0; letter < 26; letter++) {
+                maxCount[letter] = Math.max(maxCount[letter], counts[letter]);
+            }
+        }
+        _words = valid.toArray(new String[0]);
+        _numLongs = (_words.length + 63) >>> 6;
+        long[] all = new long[_numLongs];
+        for (int id = 0; id < _words.length; id++) {
+            all[id >>> 6] |= 1L << id;
+        }
+        _postings = new long[26][][];
+        for (int letter = 0; letter < 26; letter++) {
+            _postings[letter] = new long[maxCount[letter] + 1][];
+            _postings[letter][0] = all;
+            for (int count = 1; count <= maxCount[letter]; count++) {
+                _postings[letter][count] = new long[_numLongs];
+            }
+        }
+        for (int id = 0; id < _words.length; id++) {
+            countLetters(_words[id], counts);
+            for (int letter = 0; letter < 26; letter++) {
+                for (int count = 1; count <= counts[letter]; count++) {
+                    _postings[letter][count][id >>> 6] |= 1L << id;
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor used by readFrom, which fills in the bitsets itself.
+     */
+    private WordPostings(Dictionary dictionary) {
+        _dictionary = dictionary;
+    }
+
+    /**
+     * Writes the bitsets of this index to the given stream, in the format read back by readFrom. The words
+     * themselves aren't written, so the index must be over the same words, in the same order, as the Dictionary
+     * it is read back with.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(_numLongs);
+        writeBits(_postings[0][0], out);
+        for (int letter = 0; letter < 26; letter++) {
+            out.writeInt(_postings[letter].length - 1);
+            for (int count = 1; count < _postings[letter].length; count++) {
+                writeBits(_postings[letter][count], out);
+            }
+        }
+    }
+
+    /**
+     * Helper method for writeTo that writes one bitset.
+     */
+    private static void writeBits(long[] bits, DataOutputStream out) throws IOException {
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads an index written by writeTo from the given buffer, starting at its current position, and leaves the
+     * position just past it. The words are the given Dictionary's, by id, and are only turned into Strings when
+     * a query returns them. Copying the bitsets out of the buffer takes a millisecond or two.
+     */
+    public static WordPostings readFrom(ByteBuffer buf, Dictionary dictionary) {
+        WordPostings p = new WordPostings(dictionary);
+        p._numLongs = buf.getInt();
+        long[] all = readBits(buf, p._numLongs);
+        p._postings = new long[26][][];
+        for (int letter = 0; letter < 26; letter++) {
+            int maxCount = buf.getInt();
+            p._postings[letter] = new long[maxCount + 1][];
+            p._postings[letter][0] = all;
+            for (int count = 1; count <= maxCount; count++) {
+                p._postings[letter][count] = readBits(buf, p._numLongs);
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Helper method for readFrom that reads one bitset of the given number of longs.
+     */
+    private static long[] readBits(ByteBuffer buf, int numLongs) {
+        long[] bits = new long[numLongs];
+        buf.asLongBuffer().get(bits);
+        buf.position(buf.position() + 8 * numLongs);
+        return bits;
+    }
+
+    /**
+     * Returns whether this index can answer a query with the given Set of required letters. The index only
+     * handles required letters that are single uppercase letters; anything else should be answered by scanning
+     * the word list.
+     */
+    public static boolean supports(HashSet<String> requiredLetters) {
+        for (String letter : requiredLetters) {
+            if (letter.length() != 1 || letter.charAt(0) < 'A' || letter.charAt(0) > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Given a Rack of letters and a Set of required letters, returns a Set of all indexed words that can be
+     * formed from those letters and that contain every required letter. Returns the same words as
+     * Utils.allPossibleWords does when scanning the full word list.
+     */
+    public HashSet<String> anagrams(Rack letters, HashSet<String> requiredLetters) {
+        return collect(candidates(letters, requiredLetters));
+    }
+
+    /**
+     * Given a Rack of letters and a required letter, returns a Set of all indexed words that can be formed from
+     * those letters and that contain the required letter, which must be an uppercase letter, or 0 to require none.
+     */
+    public HashSet<String> anagrams(Rack letters, char required) {
+        long[] result;
+        if (required == 0) {
+            result = _postings[0][0].clone();
+        } else {
+            long[][] postings = _postings[required - 'A'];
+            if (postings.length < 2 || letters.count(required) == 0) {
+                return new HashSet<>();
+            }
+            result = postings[1].clone();
+        }
+        removeTooMany(letters, result);
+        return collect(result);
+    }
+
+    /**
+     * Helper method for the anagrams methods that returns a Set of the words whose ids are set in the given bitset.
+     */
+    private HashSet<String> collect(long[] candidates) {
+        HashSet<String> anagrams = new HashSet<>();
+        for (int i = 0; i < _numLongs; i++) {
+            long bits = candidates[i];
+            while (bits != 0) {
+                int id = (i << 6) + Long.numberOfTrailingZeros(bits);
+                anagrams.add(_words != null ? _words[id] : _dictionary.word(id));
+                bits &= bits - 1;
+            }
+        }
+        return anagrams;
+    }
+
+    /**
+     * Helper method for anagrams that returns the bitset of the ids of every word that can be formed from the
+     * given letters and that contains every required letter.
+     */
+    private long[] candidates(Rack letters, HashSet<String> requiredLetters) {
+        long[] result = null;
+        for (String letter : requiredLetters) {
+            long[][] postings = _postings[letter.charAt(0) - 'A'];
+            if (postings.length < 2 || letters.count(letter.charAt(0)) == 0) {
+                return new long[_numLongs];
+            }
+            if (result == null) {
+                result = postings[1].clone();
+            } else {
+                and(result, postings[1]);
+            }
+        }
+        if (result == null) {
+            result = _postings[0][0].clone();
+        }
+        removeTooMany(letters, result);
+        return result;
+    }
+
+    /**
+     * Clears the bit of every word in the given bitset that needs more of some letter than the given Rack has.
+     */
+    private void removeTooMany(Rack letters, long[] result) {
+        for (int letter = 0; letter < 26; letter++) {
+            long[][] postings = _postings[letter];
+            int tooMany = letters.count((char) ('A' + letter)) + 1;
+            if (tooMany < postings.length) {
+                andNot(result, postings[tooMany]);
+            }
+        }
+    }
+
+    /**
+     * Clears every bit of the first bitset that isn't set in the second.
+     */
+    private static void and(long[] result, long[] other) {
+        for (int i = 0; i < result.length; i++) {
+            result[i] &= other[i];
+        }
+    }
+
+    /**
+     * Clears every bit of the first bitset that is set in the second.
+     */
+    private static void andNot(long[] result, long[] other) {
+        for (int i = 0; i < result.length; i++) {
+            result[i] &= ~other[i];
+        }
+    }
+
+    /**
+     * Fills counts with the number of times each letter appears in the given word, and returns whether the word
+     * is made up only of the uppercase letters A through Z. The counts are only meaningful if it is.
+     */
+    private static boolean countLetters(String w, int[] counts) {
+        for (int letter = 0; letter < 26; letter++) {
+            counts[letter] = 0;
+        }
+        for (int i = 0; i < w.length(); i++) {
+            char c = w.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return false;
+            }
+            counts[c - 'A']++;
+        }
+        return !w.isEmpty();
+    }
+}
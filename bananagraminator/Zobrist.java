@@ -0,0 +1,50 @@
+/**
+ * A class that provides the random keys used to Zobrist hash game states. The hash of a
+ * state is the XOR of one key for every letter on the board, one for every word placement, and one for
+ * the count of every letter in hand, so it can be updated in constant time whenever one of those changes.
+ * Keys are computed from their inputs with a strong mixing function rather than read from a table, so
+ * boards of any size share the same scheme and no table has to be allocated.
+ *
+ * @author Aryan Agrawal
+ */
+public class Zobrist {
+
+    /** Separate starting values for each kind of key, so that keys of different kinds never coincide.*/
+    private static final long CELL_SALT = 0x3C6EF372FE94F82BL, WORD_SALT = 0xA54FF53A5F1D36F1L,
+            LETTER_SALT = 0x510E527FADE682D1L;
+
+    /**
+     * Returns the key for the given letter sitting in the space at the given coordinate.
+     */
+    public static long cell(int x, int y, char c) {
+        return mix(mix(mix(CELL_SALT ^ x) ^ y) ^ c);
+    }
+
+    /**
+     * Returns the key for the given word placed starting at the given coordinate, in the given
+     * direction. 1 for vertical, 0 for horizontal.
+     */
+    public static long word(String word, int x, int y, int dir) {
+        return mix(mix(mix(mix(WORD_SALT ^ word.hashCode()) ^ word.length()) ^ x) ^ ((long) y << 1 | dir));
+    }
+
+    /**
+     * Returns the key for holding exactly count tiles of the given letter. Holding none of a letter
+     * has the key 0, so an empty Rack hashes to 0.
+     */
+    public static long letterCount(char letter, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        return mix(mix(LETTER_SALT ^ letter) ^ count);
+    }
+
+    /**
+     * The SplitMix64 finalizer. Spreads every bit of the input across every bit of the output.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,229 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Set;
+
+/**
+ * Typed access to the Bananagraminator classes for the benchmarks. The program lives in the default package,
+ * which code in a named package can't import, and JMH refuses to generate benchmarks in the default package.
+ * So every call goes through a static final MethodHandle, which the JIT inlines like a direct call once the
+ * benchmark is warm.
+ *
+ * @author Aryan Agrawal
+ */
+final class Api {
+
+    /** The classes of the program used by the benchmarks.*/
+    static final Class<?> RACK = load("Rack");
+    static final Class<?> BOARD = load("BananaBoard");
+    static final Class<?> MOVE = load("Move");
+    static final Class<?> PLAYER = load("Player");
+    static final Class<?> UTILS = load("Utils");
+
+    private static final MethodHandle NEW_RACK = constructor(RACK);
+    private static final MethodHandle COPY_RACK = constructor(RACK, RACK);
+    private static final MethodHandle RACK_ADD = method(RACK, "add", void.class, char.class);
+    private static final MethodHandle RACK_USE_WORD = method(RACK, "useWord", void.class, CharSequence.class);
+    private static final MethodHandle RACK_TOTAL = method(RACK, "total", int.class);
+
+    private static final MethodHandle ALL_POSSIBLE_WORDS = staticMethod(UTILS, "allPossibleWords", Set.class, RACK);
+    private static final MethodHandle IS_WORD = staticMethod(UTILS, "isWord", boolean.class, String.class);
+    private static final MethodHandle WORD_SCORE = staticMethod(UTILS, "wordScore", int.class, String.class);
+    private static final MethodHandle SET_CACHE_SIZE = staticMethod(UTILS, "setAnagramCacheSize", void.class, int.class);
+
+    private static final MethodHandle NEW_BOARD = constructor(BOARD, int.class);
+    private static final MethodHandle COPY_BOARD = constructor(BOARD, BOARD);
+    private static final MethodHandle LEGAL_MOVES = method(BOARD, "legalMoves", ArrayList.class, RACK);
+    private static final MethodHandle LEGAL_MOVES_DAWG = method(BOARD, "legalMovesDawg", ArrayList.class, RACK);
+    private static final MethodHandle IS_VALID = method(BOARD, "isValid", boolean.class);
+    private static final MethodHandle ADD_FIRST_WORD = method(BOARD, "addWord", boolean.class, String.class);
+    private static final MethodHandle ADD_WORD = method(BOARD, "addWord", boolean.class, MOVE);
+
+    private static final MethodHandle SHARED_LETTER = method(MOVE, "getSharedLetter", char.class);
+    private static final MethodHandle NEW_WORD = method(MOVE, "getNewWord", String.class);
+
+    private static final MethodHandle NEW_PLAYER = constructor(PLAYER, RACK, int.class);
+    private static final MethodHandle CREATE_BANANAGRAMS = method(PLAYER, "createBananagrams", void.class);
+    private static final MethodHandle HEURISTIC = privateMethod(PLAYER, "heuristic", int.class, BOARD, RACK, boolean.class);
+
+    /**
+     * Not instantiable.
+     */
+    private Api() {
+    }
+
+    static Object newRack() throws Throwable {
+        return (Object) NEW_RACK.invokeExact();
+    }
+
+    static Object copyRack(Object rack) throws Throwable {
+        return (Object) COPY_RACK.invokeExact(rack);
+    }
+
+    static void add(Object rack, char c) throws Throwable {
+        RACK_ADD.invokeExact(rack, c);
+    }
+
+    static void useWord(Object rack, CharSequence word) throws Throwable {
+        RACK_USE_WORD.invokeExact(rack, word);
+    }
+
+    static int total(Object rack) throws Throwable {
+        return (int) RACK_TOTAL.invokeExact(rack);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Set<String> allPossibleWords(Object rack) throws Throwable {
+        return (Set<String>) ALL_POSSIBLE_WORDS.invokeExact(rack);
+    }
+
+    static boolean isWord(String s) throws Throwable {
+        return (boolean) IS_WORD.invokeExact(s);
+    }
+
+    static int wordScore(String s) throws Throwable {
+        return (int) WORD_SCORE.invokeExact(s);
+    }
+
+    static void setAnagramCacheSize(int size) throws Throwable {
+        SET_CACHE_SIZE.invokeExact(size);
+    }
+
+    static Object newBoard(int dim) throws Throwable {
+        return (Object) NEW_BOARD.invokeExact(dim);
+    }
+
+    static Object copyBoard(Object board) throws Throwable {
+        return (Object) COPY_BOARD.invokeExact(board);
+    }
+
+    @SuppressWarnings("unchecked")
+    static ArrayList<Object> legalMoves(Object board, Object rack) throws Throwable {
+        return (ArrayList<Object>) LEGAL_MOVES.invokeExact(board, rack);
+    }
+
+    @SuppressWarnings("unchecked")
+    static ArrayList<Object> legalMovesDawg(Object board, Object rack) throws Throwable {
+        return (ArrayList<Object>) LEGAL_MOVES_DAWG.invokeExact(board, rack);
+    }
+
+    static boolean isValid(Object board) throws Throwable {
+        return (boolean) IS_VALID.invokeExact(board);
+    }
+
+    static boolean addFirstWord(Object board, String word) throws Throwable {
+        return (boolean) ADD_FIRST_WORD.invokeExact(board, word);
+    }
+
+    static boolean addWord(Object board, Object move) throws Throwable {
+        return (boolean) ADD_WORD.invokeExact(board, move);
+    }
+
+    static char sharedLetter(Object move) throws Throwable {
+        return (char) SHARED_LETTER.invokeExact(move);
+    }
+
+    static String newWord(Object move) throws Throwable {
+        return (String) NEW_WORD.invokeExact(move);
+    }
+
+    static Object newPlayer(Object rack, int dim) throws Throwable {
+        return (Object) NEW_PLAYER.invokeExact(rack, dim);
+    }
+
+    static void createBananagrams(Object player) throws Throwable {
+        CREATE_BANANAGRAMS.invokeExact(player);
+    }
+
+    static int heuristic(Object player, Object board, Object rack, boolean noMoves) throws Throwable {
+        return (int) HEURISTIC.invokeExact(player, board, rack, noMoves);
+    }
+
+    /**
+     * Returns the class of the program with the given name.
+     */
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Returns a handle on the given constructor, taking and returning Objects in place of the program's classes.
+     */
+    private static MethodHandle constructor(Class<?> owner, Class<?>... params) {
+        try {
+            MethodHandle h = MethodHandles.publicLookup().findConstructor(owner, MethodType.methodType(void.class, params));
+            return h.asType(erase(h.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Returns a handle on the given public instance method, taking and returning Objects in place of the
+     * program's classes.
+     */
+    private static MethodHandle method(Class<?> owner, String name, Class<?> returns, Class<?>... params) {
+        try {
+            MethodHandle h = MethodHandles.publicLookup().findVirtual(owner, name, MethodType.methodType(returns, params));
+            return h.asType(erase(h.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Returns a handle on the given public static method, taking and returning Objects in place of the
+     * program's classes.
+     */
+    private static MethodHandle staticMethod(Class<?> owner, String name, Class<?> returns, Class<?>... params) {
+        try {
+            MethodHandle h = MethodHandles.publicLookup().findStatic(owner, name, MethodType.methodType(returns, params));
+            return h.asType(erase(h.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Returns a handle on the given private instance method, for benchmarking helpers that aren't public.
+     */
+    private static MethodHandle privateMethod(Class<?> owner, String name, Class<?> returns, Class<?>... params) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle h = lookup.findVirtual(owner, name, MethodType.methodType(returns, params));
+            return h.asType(erase(h.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Returns the given type with every one of the program's classes replaced by Object.
+     */
+    private static MethodType erase(MethodType type) {
+        MethodType result = type;
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isProgramClass(type.parameterType(i))) {
+                result = result.changeParameterType(i, Object.class);
+            }
+        }
+        if (isProgramClass(type.returnType())) {
+            result = result.changeReturnType(Object.class);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the given class is one of the program's, which all live in the default package.
+     */
+    private static boolean isProgramClass(Class<?> c) {
+        return !c.isPrimitive() && c.getPackageName().isEmpty();
+    }
+}
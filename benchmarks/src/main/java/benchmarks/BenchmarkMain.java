@@ -0,0 +1,34 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Entry point of the benchmarks jar. Runs JMH with the given arguments, adding the GC profiler unless a
+ * profiler was already asked for, so that every run reports allocation rates alongside throughput and
+ * latency percentiles.
+ *
+ * Format: java -jar benchmarks/target/benchmarks.jar [JMH options], for example "SolveBenchmark -p tiles=21".
+ *
+ * @author Aryan Agrawal
+ */
+public final class BenchmarkMain {
+
+    /**
+     * Not instantiable.
+     */
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Runner method that passes the given arguments on to JMH.
+     */
+    public static void main(String[] args) throws Exception {
+        ArrayList<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-prof") && !options.contains("-h") && !options.contains("-l")) {
+            options.add("-prof");
+            options.add("gc");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
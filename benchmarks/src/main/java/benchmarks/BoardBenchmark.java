@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for BananaBoard on a seeded position in the middle of a game: generating legal moves with either
+ * engine, checking the whole board with isValid, copying the board, adding a word to a copy, and scoring the
+ * position with Player's heuristic.
+ *
+ * @author Aryan Agrawal
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoardBenchmark {
+
+    /** The number of tiles the position was played from.*/
+    @Param({"21", "40"})
+    public int tiles;
+
+    /** The seed of the rack the position was played from.*/
+    @Param({"1", "2", "3"})
+    public long seed;
+
+    /** The number of moves played after the first word to reach the position.*/
+    private static final int MOVES = 4;
+
+    /** The position benchmarked.*/
+    private Corpus.Position _position;
+    /** A legal move in the position, added by addWord.*/
+    private Object _move;
+    /** A Player holding the position's rack, used to call heuristic.*/
+    private Object _player;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        _position = Corpus.position(tiles, seed, MOVES);
+        List<Object> legal = Api.legalMovesDawg(_position.board, _position.rack);
+        _move = legal.isEmpty() ? null : legal.get(legal.size() / 2);
+        _player = Api.newPlayer(Api.copyRack(_position.rack), Corpus.boardSize(tiles));
+    }
+
+    @Benchmark
+    public Object legalMoves() throws Throwable {
+        return Api.legalMoves(_position.board, _position.rack);
+    }
+
+    @Benchmark
+    public Object legalMovesDawg() throws Throwable {
+        return Api.legalMovesDawg(_position.board, _position.rack);
+    }
+
+    @Benchmark
+    public boolean isValid() throws Throwable {
+        return Api.isValid(_position.board);
+    }
+
+    @Benchmark
+    public Object copy() throws Throwable {
+        return Api.copyBoard(_position.board);
+    }
+
+    /**
+     * Adds a word to a fresh copy of the board each time, so this includes the cost of copy.
+     */
+    @Benchmark
+    public boolean copyAndAddWord() throws Throwable {
+        Object board = Api.copyBoard(_position.board);
+        return _move != null && Api.addWord(board, _move);
+    }
+
+    @Benchmark
+    public int heuristic() throws Throwable {
+        return Api.heuristic(_player, _position.board, _position.rack, false);
+    }
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The fixed, seeded inputs every benchmark runs on, so that results from different builds are comparable.
+ * Racks are drawn without replacement from a standard 144-tile Bananagrams bag, and boards are set up by
+ * playing a fixed sequence of moves from a seeded rack.
+ *
+ * @author Aryan Agrawal
+ */
+final class Corpus {
+
+    /** The number of each letter, A through Z, in a standard Bananagrams bag of 144 tiles.*/
+    private static final int[] BAG = {13, 3, 3, 6, 18, 3, 4, 3, 12, 2, 2, 5, 3, 8, 11, 3, 2, 9, 6, 9, 6, 3, 3, 2, 3, 2};
+
+    /**
+     * Not instantiable.
+     */
+    private Corpus() {
+    }
+
+    /**
+     * Returns the given number of tiles, at most 144, drawn at random from a full bag using the given seed.
+     * The same tiles and seed always give the same letters.
+     */
+    static String tiles(int count, long seed) {
+        ArrayList<Character> bag = new ArrayList<>();
+        for (int letter = 0; letter < 26; letter++) {
+            for (int n = 0; n < BAG[letter]; n++) {
+                bag.add((char) ('A' + letter));
+            }
+        }
+        if (count > bag.size()) {
+            throw new IllegalArgumentException("A bag only holds " + bag.size() + " tiles.");
+        }
+        Collections.shuffle(bag, new Random(seed));
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(bag.get(i));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns a new Rack holding the given tiles.
+     */
+    static Object rack(String tiles) throws Throwable {
+        Object rack = Api.newRack();
+        for (int i = 0; i < tiles.length(); i++) {
+            Api.add(rack, tiles.charAt(i));
+        }
+        return rack;
+    }
+
+    /**
+     * Returns the side length of the board the benchmarks solve a rack of the given number of tiles on.
+     */
+    static int boardSize(int tiles) {
+        return Math.max(31, tiles) | 1;
+    }
+
+    /**
+     * A board in the middle of a game, along with the rack left to play on it.
+     */
+    static final class Position {
+        /** The board, a BananaBoard.*/
+        final Object board;
+        /** The letters left to play, a Rack.*/
+        final Object rack;
+
+        /**
+         * Constructor that stores the given board and rack.
+         */
+        private Position(Object board, Object rack) {
+            this.board = board;
+            this.rack = rack;
+        }
+    }
+
+    /**
+     * Returns the position reached by placing the highest scoring first word formable from the given tiles, and
+     * then up to the given number of further moves. Each move is the legal move whose new word comes first
+     * alphabetically, so the position only depends on the arguments.
+     */
+    static Position position(int tiles, long seed, int moves) throws Throwable {
+        Object rack = rack(tiles(tiles, seed));
+        Object board = Api.newBoard(boardSize(tiles));
+        Set<String> firsts = Api.allPossibleWords(rack);
+        String first = null;
+        for (String w : firsts) {
+            if (first == null || Api.wordScore(w) > Api.wordScore(first)
+                    || (Api.wordScore(w) == Api.wordScore(first) && w.compareTo(first) < 0)) {
+                first = w;
+            }
+        }
+        Api.addFirstWord(board, first);
+        Api.useWord(rack, first);
+        for (int m = 0; m < moves; m++) {
+            List<Object> legal = Api.legalMovesDawg(board, rack);
+            if (legal.isEmpty()) {
+                break;
+            }
+            Object move = Collections.min(legal, Comparator.comparing(Corpus::describe));
+            Api.addWord(board, move);
+            Api.add(rack, Api.sharedLetter(move));
+            Api.useWord(rack, Api.newWord(move));
+        }
+        return new Position(board, rack);
+    }
+
+    /**
+     * Returns a String that orders Moves by their new word, and then by their hashCode, which only depends on
+     * where they are placed, for picking moves deterministically.
+     */
+    private static String describe(Object move) {
+        try {
+            return Api.newWord(move) + " " + move.hashCode();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the word list queries in Utils: anagramming a rack with allPossibleWords, and checking
+ * words with isWord.
+ *
+ * @author Aryan Agrawal
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DictionaryBenchmark {
+
+    /** The number of tiles in each rack anagrammed.*/
+    @Param({"7", "21", "40"})
+    public int tiles;
+
+    /** The size of the anagram cache, where 0 turns it off and measures the index itself.*/
+    @Param({"0", "4096"})
+    public int cacheSize;
+
+    /** The number of different seeded racks cycled through.*/
+    private static final int NUM_RACKS = 64;
+
+    /** Words and non-words checked by isWord, in turn.*/
+    private static final String[] LOOKUPS = {"BANANA", "GRAM", "QUIXOTIC", "ZZZ", "AEIOU", "STREAM", "MASTER",
+        "TAMERS", "XYLOPHONE", "QI", "BANANAGRAM", "JUKEBOX", "ANAGRAMMING", "ETAOIN", "RHYTHM", "A"};
+
+    /** The racks anagrammed, in turn.*/
+    private Object[] _racks;
+    /** The index of the next rack or word to use.*/
+    private int _next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Api.setAnagramCacheSize(cacheSize);
+        _racks = new Object[NUM_RACKS];
+        for (int i = 0; i < NUM_RACKS; i++) {
+            _racks[i] = Corpus.rack(Corpus.tiles(tiles, i));
+        }
+        Api.isWord("WARM");
+        Api.allPossibleWords(_racks[0]);
+    }
+
+    @Benchmark
+    public Object allPossibleWords() throws Throwable {
+        _next = (_next + 1) % NUM_RACKS;
+        return Api.allPossibleWords(_racks[_next]);
+    }
+
+    @Benchmark
+    public boolean isWord() throws Throwable {
+        _next = (_next + 1) % LOOKUPS.length;
+        return Api.isWord(LOOKUPS[_next]);
+    }
+}
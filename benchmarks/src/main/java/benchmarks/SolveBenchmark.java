@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * End-to-end benchmark of Player.createBananagrams on a fixed corpus of seeded racks: 21-tile starting hands,
+ * and 40, 80 and all 144 tiles. The board is printed by createBananagrams, so standard output is thrown away
+ * while it runs. A rack the Player can't finish still counts, since the time spent giving up is part of the
+ * cost of solving it.
+ *
+ * @author Aryan Agrawal
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SolveBenchmark {
+
+    /** The number of tiles in the rack solved.*/
+    @Param({"21", "40", "80", "144"})
+    public int tiles;
+
+    /** The seed the rack was drawn with. Every seed draws the same 144 tiles.*/
+    @Param({"1", "2", "3"})
+    public long seed;
+
+    /** The tiles solved.*/
+    private String _tiles;
+    /** Standard output, put back after the trial.*/
+    private PrintStream _out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        _tiles = Corpus.tiles(tiles, seed);
+        _out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Api.isWord("WARM");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(_out);
+    }
+
+    @Benchmark
+    public void createBananagrams(Blackhole bh) throws Throwable {
+        Object player = Api.newPlayer(Corpus.rack(_tiles), Corpus.boardSize(tiles));
+        try {
+            Api.createBananagrams(player);
+        } catch (RuntimeException e) {
+            bh.consume(e);
+        }
+        bh.consume(player);
+    }
+}